@@ -0,0 +1,49 @@
+package com.dmogroup5;
+
+import com.dmogroup5.bench.BenchmarkInstances;
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of Solver.iterativeImprovement() (all the used neighborhoods plus acceptance) on a solution which
+ * evolves during the measurement, as in the ILS main loop. It is in the solver package to reach the
+ * package-private step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IterationBenchmark {
+
+    @Param({"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"})
+    public String instanceName;
+
+    @Param({"0", "20"})
+    public double tempSA;
+
+    private Solver solver;
+    private Solution current;
+    private Random rand;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Instance instance = BenchmarkInstances.read(this.instanceName);
+        this.solver = new Solver(instance, false, 0);
+        this.rand = new Random(42);
+        this.current = Solution.weightedSolution(instance, true, this.rand);
+        this.current.getFitness();
+    }
+
+    @Benchmark
+    public boolean iterativeImprovement() {
+        return this.solver.iterativeImprovement(this.current, this.tempSA, this.rand);
+    }
+}
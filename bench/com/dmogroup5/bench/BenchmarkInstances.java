@@ -0,0 +1,17 @@
+package com.dmogroup5.bench;
+
+import com.dmogroup5.utils.Instance;
+
+import java.io.IOException;
+
+/**
+ * Shared set up of the benchmarks: instances are read from the folder given by the `etp.instances` system property
+ */
+public class BenchmarkInstances {
+
+    public static final String DIRECTORY = System.getProperty("etp.instances", "instances");
+
+    public static Instance read(String instanceName) throws IOException {
+        return Instance.readInstance(instanceName, DIRECTORY);
+    }
+}
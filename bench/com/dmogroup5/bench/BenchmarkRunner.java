@@ -0,0 +1,29 @@
+package com.dmogroup5.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks of the solver hot paths with the GC profiler, which reports the allocation rate
+ * (gc.alloc.rate.norm = bytes allocated per operation) next to the throughput.
+ * An optional argument selects the benchmarks with a regular expression, e.g. `NeighborhoodBenchmark`.
+ * Instances are read from the folder in the `etp.instances` system property (default `instances`), and the
+ * `etp.jvmArgs` system property can hold additional flags for the forked benchmark JVMs.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        // forked JVMs must read the same instances folder
+        String jvmArgs = "-Detp.instances=" + BenchmarkInstances.DIRECTORY + " "
+                + System.getProperty("etp.jvmArgs", "");
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com\\.dmogroup5\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend(jvmArgs.trim().split("\\s+"))
+                .build();
+        new Runner(options).run();
+    }
+}
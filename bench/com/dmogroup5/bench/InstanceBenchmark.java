@@ -0,0 +1,28 @@
+package com.dmogroup5.bench;
+
+import com.dmogroup5.utils.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of the three instance files and construction of the conflict graph
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstanceBenchmark {
+
+    @Param({"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"})
+    public String instanceName;
+
+    @Benchmark
+    public Instance readInstance() throws IOException {
+        return BenchmarkInstances.read(this.instanceName);
+    }
+}
@@ -0,0 +1,45 @@
+package com.dmogroup5.bench;
+
+import com.dmogroup5.heuristics.LocalSearch;
+import com.dmogroup5.heuristics.Move;
+import com.dmogroup5.utils.Solution;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation and evaluation of a move of each neighborhood structure. Moves are not applied, so every operation
+ * starts from the same solution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeighborhoodBenchmark {
+
+    @Param({"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"})
+    public String instanceName;
+
+    @Param({"N1", "N2", "N3", "N4", "N5", "N6", "N7", "N8", "N9", "N10", "N11"})
+    public LocalSearch.NeighStructures neighborhood;
+
+    private Solution solution;
+    private Random rand;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.rand = new Random(42);
+        this.solution = Solution.weightedSolution(BenchmarkInstances.read(this.instanceName), true, this.rand);
+        this.solution.getFitness();
+    }
+
+    @Benchmark
+    public Move genMove() {
+        return LocalSearch.genMove(this.solution, this.neighborhood, this.rand);
+    }
+}
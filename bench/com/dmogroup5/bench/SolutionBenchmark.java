@@ -0,0 +1,60 @@
+package com.dmogroup5.bench;
+
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the initial solution, full objective computation and selection of the highest penalty exam
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolutionBenchmark {
+
+    @Param({"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"})
+    public String instanceName;
+
+    private Instance instance;
+    private Solution solution;
+    private Random rand;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.instance = BenchmarkInstances.read(this.instanceName);
+        this.rand = new Random(42);
+        this.solution = Solution.weightedSolution(this.instance, true, this.rand);
+    }
+
+    @Benchmark
+    public Solution weightedSolution() {
+        return Solution.weightedSolution(this.instance, true, this.rand);
+    }
+
+    /**
+     * computeObj() through the lazy getFitness()
+     */
+    @Benchmark
+    public double computeObj() {
+        this.solution.resetAttributes();
+        return this.solution.getFitness();
+    }
+
+    @Benchmark
+    public int[] getHighestPenaltyExam10() {
+        return this.solution.getHighestPenaltyExam(0.1, this.rand);
+    }
+
+    @Benchmark
+    public int[] getHighestPenaltyExam20() {
+        return this.solution.getHighestPenaltyExam(0.2, this.rand);
+    }
+}
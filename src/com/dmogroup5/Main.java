@@ -1,12 +1,17 @@
 package com.dmogroup5;
 
+import com.dmogroup5.heuristics.GeneticAlgorithms;
+import com.dmogroup5.heuristics.LocalSearch;
 import com.dmogroup5.parser.Params;
+import com.dmogroup5.threads.BestSolutionHolder;
 import com.dmogroup5.threads.SolverThread;
 import com.dmogroup5.utils.*;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
 
 public class Main {
 
@@ -19,17 +24,59 @@ public class Main {
             params.parse();
 
             // Pass the name of the instance and read the files
-            Instance instance = Instance.readInstance(params.getInstanceName());
+            Instance instance = Instance.readInstance(params.getInstanceName(), "", params.isCACHE());
+            Solution.setVerifyDelta(params.isVERIFY_DELTA());
+            Solution.setConflictTable(params.isCONFLICT_TABLE());
+            if (params.getFITNESS_CACHE() > 0) {
+                instance.setFitnessCache(new FitnessCache(params.getFITNESS_CACHE()));
+            }
+
+            // Start the execution of the solvers, each one in a separate thread. They share the global best
+            // solution, which is the only one written in the solution file
+            BestSolutionHolder bestHolder = new BestSolutionHolder();
+            Random seeds = params.getSEED() != null ? new Random(params.getSEED()) : new Random();
+            SolverThread[] solverThreads = new SolverThread[params.getWORKERS()];
+            for (int i = 0; i < solverThreads.length; i++) {
+                // only the first solver prints additional messages and writes the log file
+                Solver solver = new Solver(instance, params.isDEBUG() && i == 0, params.getTLIM());
+                solver.setNbhThreads(params.getNBH_THREADS());
+                solver.setSeed(seeds.nextLong());
+                solver.setBestHolder(bestHolder);
+                solver.setAlgorithm(Solver.Algorithm.valueOf(params.getALGORITHM().toUpperCase()));
+                solver.setNReplicas(params.getREPLICAS());
+                solver.setNIslands(params.getISLANDS());
+                solver.setSelection(GeneticAlgorithms.ParentSelection.valueOf(params.getSELECTION().toUpperCase()));
+                solver.setCrossover(GeneticAlgorithms.Crossover.valueOf(params.getCROSSOVER().toUpperCase()));
+                solver.setAdaptive(params.isADAPTIVE());
+                for (Map.Entry<String, String> exploration : params.getEXPLORATIONS().entrySet()) {
+                    solver.setExploration(LocalSearch.NeighStructures.valueOf(exploration.getKey().toUpperCase()),
+                            LocalSearch.Exploration.valueOf(exploration.getValue().toUpperCase()));
+                }
 
-            // Start the execution of the solver in a separate thread
-            Solver solver = new Solver(instance, params.isDEBUG(), params.getTLIM());
-            SolverThread solverThread = new SolverThread(solver);
-            solverThread.start();
+                // the first solver starts from the default temperature, the others from a random multiple of it
+                // between 0.5 and 2 to diversify the search
+                double tempFactor = i == 0 ? 1 : Math.pow(2, 2 * seeds.nextDouble() - 1);
+                solverThreads[i] = new SolverThread(solver, tempFactor);
+                solverThreads[i].start();
+            }
 
-            // Wait for the requested timelim (converted in ms) and interrupt the execution of the solver
+            // Wait for the requested timelim (converted in ms) and interrupt the execution of the solvers
             Thread.sleep((long) (params.getTLIM() * 1000));
             System.out.println("Time available elapsed!");
-            solverThread.interrupt();
+            for (SolverThread solverThread : solverThreads) {
+                solverThread.interrupt();
+            }
+
+            if (solverThreads.length > 1) {
+                for (SolverThread solverThread : solverThreads) {
+                    solverThread.join();
+                }
+                if (bestHolder.getBest() != null) {
+                    System.out.println("Best obj function value among all workers: " + bestHolder.getBest().getFitness());
+                } else {
+                    System.out.println("No solution found within the time limit");
+                }
+            }
 
         } catch (IOException e) {
             if (!params.isHELP()) {
@@ -2,6 +2,9 @@ package com.dmogroup5;
 
 import com.dmogroup5.heuristics.GeneticAlgorithms;
 import com.dmogroup5.heuristics.LocalSearch;
+import com.dmogroup5.heuristics.Move;
+import com.dmogroup5.heuristics.OperatorSelector;
+import com.dmogroup5.threads.BestSolutionHolder;
 import com.dmogroup5.utils.Instance;
 import com.dmogroup5.utils.Logger;
 import com.dmogroup5.utils.Solution;
@@ -9,13 +12,73 @@ import com.dmogroup5.utils.Solution;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class Solver {
 
+    public enum Algorithm {
+        ILS, // Iterated local search with simulated annealing
+        PT, // Parallel tempering
+        TABU, // Tabu search
+        GA // Genetic algorithm (island model)
+    }
+
+    // temperature of the coldest replica and number of iterations between exchanges in parallel tempering
+    private static final double PT_MIN_TEMP = 0.05;
+    private static final int PT_SWEEP = 50;
+    // minimum tabu tenure (increased with the number of exams) and iterations without improvements before the
+    // tabu search restarts from the best solution
+    private static final int TABU_TENURE = 10;
+    private static final int TABU_RESTART = 150;
+    // random Kempe chain moves applied to the best solution when the tabu search restarts
+    private static final int TABU_PERTURBATION = 5;
+    // neighborhood structures drawn at each iteration with the adaptive selection
+    private static final int ADAPTIVE_DRAWS = 7;
+    // size of the population of each island, portion of it selected as parents at each generation and portion of
+    // the exams reassigned by the mutation (see GeneticAlgorithms)
+    private static final int GA_POP_SIZE = 30;
+    private static final double GA_SEL_RATIO = 0.2;
+    private static final double GA_MUTATION_RATIO = 0.2;
+    // probability of recombining each selected parent with the next one
+    private static final double GA_CROSSOVER_RATE = 0.8;
+    // generations between two migrations and number of individuals sent to the next island
+    private static final int GA_MIGRATION = 10;
+    private static final int GA_MIGRANTS = 2;
+
     private Instance instance;
     private boolean verbose;
     private double solvingTime;
+    // number of threads evaluating the neighborhood structures concurrently (1 = sequential evaluation)
+    private int nbhThreads = 1;
+    private ForkJoinPool nbhPool;
+    private Random rand = new Random();
+    private Algorithm algorithm = Algorithm.ILS;
+    private int nReplicas = 2;
+    private int nIslands = 2;
+    private GeneticAlgorithms.ParentSelection selection = GeneticAlgorithms.ParentSelection.RANK;
+    private GeneticAlgorithms.Crossover crossover = GeneticAlgorithms.Crossover.TIMESLOTS;
+    // if true, the neighborhoods explored at each iteration are chosen by an OperatorSelector
+    private boolean adaptive = false;
+    // exploration of each neighborhood structure used by the local search (RANDOM if not set)
+    private EnumMap<LocalSearch.NeighStructures, LocalSearch.Exploration> explorations =
+            new EnumMap<>(LocalSearch.NeighStructures.class);
+    // global best shared with the other solvers running in parallel, which writes the solution file
+    private BestSolutionHolder bestHolder = new BestSolutionHolder();
 
     public Solver(Instance instance, boolean verbose, double solvingTime) {
         this.instance = instance;
@@ -24,126 +87,253 @@ public class Solver {
     }
 
     /**
-     * (NOT USED)
-     * Genetic Algorithm solving
+     * Memetic genetic algorithm with the island model: `nIslands` populations evolve independently, each one on its
+     * own thread. At each generation a portion of the population is selected (rank-based by default), recombined,
+     * mutated and improved with the best move among the neighborhood structures, then the best individuals among
+     * parents and children survive. Every GA_MIGRATION generations each island sends copies of its GA_MIGRANTS best individuals
+     * to the next one (ring topology) through a bounded concurrent queue, so islands never wait for each other:
+     * migrants which do not fit in the queue are dropped, the received ones replace the worst individuals.
      *
-     * @throws Exception caused mainly if an exam is compared to itself in the N matrix
+     * @param nIslands  number of populations, each one running on its own thread
      */
-    public void solveGA() throws Exception {
-        System.out.println("Solving " + this.instance.getInstanceName());
-
-        // Test reading exams
-        System.out.println("Number of exams: " + this.instance.getExams().length);
-
-        // Test P matrix creation
-//        System.out.println("First row of the P matrix:\n" + Arrays.toString(this.instance.getP()[0]));
-
-        // Test nTimeslot reading
-        System.out.println("Number of timeslots in " + this.instance.getInstanceName() +
-                ": " + this.instance.getnTimeslots());
-
-        // Test N matrix creation
-        System.out.println("Num of conflicts between exams 1,6 (IDs): " + this.instance.getNConflicts(5,0));
-
-        Solution solution = null;
-        int count = 0;
-        while (solution == null) {
-            count += 1;
-            solution = Solution.weightedSolution(this.instance, true);
+    public void solveGA(int nIslands) throws Exception {
+        Random[] rands = new Random[nIslands];
+        List<BlockingQueue<Solution>> inboxes = new ArrayList<>(nIslands);
+        for (int i = 0; i < nIslands; i++) {
+            rands[i] = new Random(this.rand.nextLong());
+            inboxes.add(new ArrayBlockingQueue<>(GA_MIGRANTS * 2));
         }
-        System.out.println("Number of attempts before feasible solution: " + count);
-        for (ArrayList timeslot: solution.getTimetable()) {
-            System.out.println(timeslot);
+        // best solution among all the islands
+        AtomicReference<Solution> best = new AtomicReference<>();
+        int[] generations = new int[nIslands];
+        Logger logger = this.verbose ? new Logger() : null;
+
+        if (this.verbose) {
+            System.out.println("Genetic algorithm set up: ISLANDS=" + nIslands + ", POPULATION=" + GA_POP_SIZE +
+                    ", MIGRATION=" + GA_MIGRANTS + " every " + GA_MIGRATION + " generations");
         }
-        System.out.println("OBJ VALUE: " + solution.getFitness());
+        System.out.println("Solving instance " + instance.getInstanceName() + "...");
 
-        Logger logger = new Logger();
+        if (this.nbhThreads > 1) {
+            this.nbhPool = new ForkJoinPool(this.nbhThreads);
+        }
+        ExecutorService islandsPool = Executors.newFixedThreadPool(nIslands);
+
+        List<Callable<Void>> islands = new ArrayList<>(nIslands);
+        for (int i = 0; i < nIslands; i++) {
+            final int island = i;
+            islands.add(() -> {
+                Random rand = rands[island];
+                Solution[] population = this.genPopulation(rand, best);
+                if (population == null) {
+                    return null;
+                }
+                // survivors are sorted by fitness, the best individual is the first one
+                population = GeneticAlgorithms.bestFirstSelection(new ArrayList<>(Arrays.asList(population)), GA_POP_SIZE);
 
-        // *********** PARAMETERS ***********
-        // size of the population
-        int POP_SIZE = 30;
-        // how many individuals (in percentage) are chosen from the population for generating children
-        double SEL_RATIO = 0.2;
-        // how many different neighborhood structures we want to explore for each parent
-        int N_NEIGH_STR = LocalSearch.NeighStructures.values().length;
-        // genetic mutation ratio (see class GeneticAlgorithms for more details)
-        double MUTATION_RATIO = 0.2;
+                while (!Thread.currentThread().isInterrupted()) {
+                    this.publish(best, population[0]);
 
-        // ************ POPULATION GENERATION ************
-        Solution[] population = new Solution[POP_SIZE];
+                    Solution[] children = this.genChildren(population, rand);
+                    if (children == null) {
+                        break;
+                    }
+                    List<Solution> pool = new ArrayList<>(Arrays.asList(population));
+                    pool.addAll(Arrays.asList(children));
+                    population = GeneticAlgorithms.bestFirstSelection(pool, GA_POP_SIZE);
+                    generations[island]++;
+
+                    if (generations[island] % GA_MIGRATION == 0) {
+                        for (int m = 0; m < GA_MIGRANTS; m++) {
+                            // the fitness is already known, so the copy can be shared with the other thread
+                            inboxes.get((island + 1) % nIslands).offer(new Solution(population[m], false));
+                        }
+                    }
+                    Solution migrant;
+                    while ((migrant = inboxes.get(island).poll()) != null) {
+                        if (migrant.getFitness() < population[GA_POP_SIZE - 1].getFitness()) {
+                            population[GA_POP_SIZE - 1] = migrant;
+                            population = GeneticAlgorithms.bestFirstSelection(
+                                    new ArrayList<>(Arrays.asList(population)), GA_POP_SIZE);
+                        }
+                    }
 
-        // generate the initial population and already write the best solution among all the individuals
-        for (int i = 0; i < population.length; i++) {
-            population[i] = Solution.weightedSolution(this.instance, true);
+                    // only the first island writes the log
+                    if (this.verbose && island == 0) {
+                        logger.appendCurrentBest(population[0].getFitness(), population[0].getNeighborhoodOrigin(), null);
+                        System.out.print("Generation: " + generations[0] + " | Best: " + best.get().getFitness() +
+                                " | Generations per island: " + Arrays.toString(generations) + "             \r");
+                    }
+                }
+                return null;
+            });
         }
 
-        // ************ MAIN LOOP ***********
-        int it = 0;
-        while (!Thread.currentThread().isInterrupted()) {
-            // ****** BEST SOLUTION PRINTOUT ******
-            int bestIdx = 0;
-            for (int i = 0; i < population.length; i++) {
-                if (population[bestIdx].getFitness() > population[i].getFitness()) {
-                    bestIdx = i;
-                }
+        // islands only terminate when interrupted or because of an exception, which is rethrown at once
+        ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(islandsPool);
+        for (Callable<Void> island : islands) {
+            completion.submit(island);
+        }
+        try {
+            for (int i = 0; i < nIslands; i++) {
+                completion.take().get();
             }
-            System.out.println("Best solution at it " + it + ": " + population[bestIdx].getFitness());
-
-            // take the best and output this first result
-            Solution bestSol = population[bestIdx];
-            try {
-                bestSol.writeSolution();
-                logger.appendCurrentBest(bestSol.getFitness(), 0, null);
-                if (this.verbose) {
-                    System.out.println("File written successfully");
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        } catch (InterruptedException e) {
+            // time limit reached while the islands are evolving
+        } finally {
+            islandsPool.shutdownNow();
+            if (this.nbhPool != null) {
+                this.nbhPool.shutdownNow();
             }
+        }
+        if (best.get() != null) {
+            System.out.println("Best obj function value: " + best.get().getFitness());
+        }
+    }
 
-            // ****** CANDIDATES SELECTION ******
-            // select 20% (selection percentage/ratio) of the population individuals
-            int nSelected = (int) (POP_SIZE * SEL_RATIO);
-//            int[] parentsIdx = new Random().ints(nSelected, 0, POP_SIZE).toArray();
-            Solution[] parents = GeneticAlgorithms.rouletteWheelSelection(Arrays.asList(population), nSelected);
+    /**
+     * Generate the children of a generation: GA_SEL_RATIO of the population is selected (see setSelection()),
+     * then each parent is recombined with the next one (see recombine()), mutated and improved with the best move
+     * among all the neighborhood structures (the twins).
+     * If neighborhood threads are enabled, the children are produced as a data-parallel pipeline: all the mutations,
+     * then the moves of every child for every neighborhood structure, then the choice of the best twins, each stage
+     * in parallel (with thread-local generators). The fitness of the children is computed within the pipeline, so
+     * that the selection only compares known values
+     *
+     * @return  the children, null if the thread has been interrupted
+     */
+    private Solution[] genChildren(Solution[] population, Random rand) throws Exception {
+        int nSelected = (int) (population.length * GA_SEL_RATIO);
+        Solution[] parents = GeneticAlgorithms.select(Arrays.asList(population), nSelected, this.selection, rand);
+        LocalSearch.NeighStructures[] nbh = LocalSearch.NeighStructures.values();
 
+        if (this.nbhPool == null) {
             Solution[] children = new Solution[nSelected];
             for (int i = 0; i < nSelected; i++) {
+                children[i] = GeneticAlgorithms.mutateSolution(this.recombine(parents, i, rand), GA_MUTATION_RATIO,
+                        rand);
+                Move[] twins = new Move[nbh.length];
+                for (int k = 0; k < nbh.length; k++) {
+                    twins[k] = LocalSearch.genMove(children[i], nbh[k], this.getExploration(nbh[k]), rand);
+                }
+                applyBestTwin(children[i], twins, 0, nbh.length);
+            }
+            return children;
+        }
 
-                // ****** MUTATION ******
-                children[i] = GeneticAlgorithms.mutateSolution(parents[i], MUTATION_RATIO);
-
-                // ****** LOCAL SEARCH ******
-                // Find the first improvement or just one new
-                // solution in the neighborhood for every structure (called twins)
-                // Then put the best between the `k` twins in the pool (as a child)
-                Solution[] twins = new Solution[N_NEIGH_STR];
+        try {
+            return this.nbhPool.submit(() -> {
+                // the mutation computes the fitness of the child by delta from the one of the recombined parents
+                Solution[] children = IntStream.range(0, nSelected).parallel()
+                        .mapToObj(i -> GeneticAlgorithms.mutateSolution(
+                                this.recombine(parents, i, ThreadLocalRandom.current()), GA_MUTATION_RATIO,
+                                ThreadLocalRandom.current()))
+                        .toArray(Solution[]::new);
+                Move[] twins = IntStream.range(0, nSelected * nbh.length).parallel()
+                        .mapToObj(j -> {
+                            LocalSearch.NeighStructures k = nbh[j % nbh.length];
+                            return LocalSearch.genMove(children[j / nbh.length], k, this.getExploration(k),
+                                    ThreadLocalRandom.current());
+                        })
+                        .toArray(Move[]::new);
+                IntStream.range(0, nSelected).parallel()
+                        .forEach(i -> applyBestTwin(children[i], twins, i * nbh.length, nbh.length));
+                return children;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-                double twinsBestF = Double.MAX_VALUE;
-                int bestTwinIdx = 0;
+    /**
+     * Crossover of the i-th selected parent with the next one, with probability GA_CROSSOVER_RATE
+     *
+     * @return  the child with its fitness computed, a copy of the i-th parent if the crossover is not applied
+     */
+    private Solution recombine(Solution[] parents, int i, Random rand) {
+        Solution child;
+        if (rand.nextDouble() < GA_CROSSOVER_RATE) {
+            child = GeneticAlgorithms.crossover(parents[i], parents[(i + 1) % parents.length], this.crossover, rand);
+        } else {
+            child = new Solution(parents[i]);
+        }
+        child.getFitness();
+        return child;
+    }
 
-                for (LocalSearch.NeighStructures k: LocalSearch.NeighStructures.values()) {
+    /**
+     * Apply to the child the move with the lowest delta among twins[from ... from+length-1], even if it worsens it,
+     * and compute its fitness
+     */
+    private static void applyBestTwin(Solution child, Move[] twins, int from, int length) {
+        Move bestTwin = twins[from];
+        for (int k = from + 1; k < from + length; k++) {
+            if (twins[k].getDelta() < bestTwin.getDelta()) {
+                bestTwin = twins[k];
+            }
+        }
+        bestTwin.apply(child);
+        child.getFitness();
+    }
 
-                    twins[k.ordinal()] = LocalSearch.genImprovedSolution(children[i], k);
-                    double tmpScore = twins[k.ordinal()].getFitness();
-                    if (tmpScore < twinsBestF) {
-                        twinsBestF = tmpScore;
-                        bestTwinIdx = k.ordinal();
-                    }
+    /**
+     * Generate the initial population of an island. The first individual is published as soon as it is built,
+     * so that a solution is available even if the time limit expires during the generation of the population.
+     * The other ones are generated in parallel if neighborhood threads are enabled. The fitness of the individuals is
+     * computed at once
+     *
+     * @param best  best solution among all the islands
+     * @return      the population, null if the thread has been interrupted
+     */
+    private Solution[] genPopulation(Random rand, AtomicReference<Solution> best) {
+        Solution[] population = new Solution[GA_POP_SIZE];
+        population[0] = Solution.weightedSolution(this.instance, true, rand);
+        this.publish(best, population[0]);
+
+        if (this.nbhPool == null) {
+            for (int p = 1; p < population.length; p++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
                 }
-
-                children[i] = twins[bestTwinIdx];
+                population[p] = Solution.weightedSolution(this.instance, true, rand);
+                population[p].getFitness();
             }
+            return population;
+        }
 
-            // ****** POOL SELECTION ******
-            // use roulette-wheel selection to pick the next generation population
-            List<Solution> pool = new ArrayList<>(Arrays.asList(population));
-            pool.addAll(Arrays.asList(children));
-
-//            population = GeneticAlgorithms.rouletteWheelSelection(pool, POP_SIZE);
-            population = GeneticAlgorithms.bestFirstSelection(pool, POP_SIZE);
+        try {
+            Solution[] others = this.nbhPool.submit(() -> IntStream.range(1, GA_POP_SIZE).parallel()
+                    .mapToObj(p -> {
+                        Solution individual = Solution.weightedSolution(this.instance, true, ThreadLocalRandom.current());
+                        individual.getFitness();
+                        return individual;
+                    })
+                    .toArray(Solution[]::new)).get();
+            System.arraycopy(others, 0, population, 1, others.length);
+            return population;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-            it++;
+    /**
+     * Publish a copy of the solution, if it is the best one among all the islands, to them and to the other solvers
+     *
+     * @param best  best solution among all the islands
+     */
+    private void publish(AtomicReference<Solution> best, Solution candidate) {
+        Solution current = best.get();
+        if (current == null || candidate.getFitness() < current.getFitness()) {
+            Solution copy = new Solution(candidate, false);
+            if (best.accumulateAndGet(copy, (a, b) -> a == null || b.getFitness() < a.getFitness() ? b : a) == copy) {
+                this.bestHolder.offer(copy);
+            }
         }
     }
 
@@ -154,9 +344,11 @@ public class Solver {
      * @param tempSA    if > 0 enables simulated annealing
      */
     public void solveILS(double tempSA) throws Exception {
-        Solution current = Solution.weightedSolution(this.instance, true);
-        Solution best = current;
-        Logger logger = new Logger();
+        Solution current = Solution.weightedSolution(this.instance, true, this.rand);
+        // the current solution is modified in place, the best one is stored as a copy without the conflict table
+        Solution best = new Solution(current, false);
+        this.bestHolder.offer(best);
+        Logger logger = this.verbose ? new Logger() : null;
 
         double coolingRate = this.instance.getExams().length * 4e-6;
 
@@ -165,16 +357,14 @@ public class Solver {
         }
         System.out.println("Solving instance " + instance.getInstanceName() + "...");
 
+        if (this.nbhThreads > 1) {
+            this.nbhPool = new ForkJoinPool(this.nbhThreads);
+        }
+        OperatorSelector selector = this.adaptive ? new OperatorSelector(LocalSearch.NeighStructures.values()) : null;
+
         int it = 1;
-        double printedSolFitness = Double.MAX_VALUE;
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                // if new best solution is available, print. otherwise do not touch the solution file
-                if (best.getFitness() < printedSolFitness) {
-                    best.writeSolution();
-                    printedSolFitness = best.getFitness();
-                }
-
                 if (this.verbose) {
 //                    System.out.println("File written successfully");
                     logger.appendCurrentBest(current.getFitness(), current.getNeighborhoodOrigin(), null);
@@ -182,9 +372,11 @@ public class Solver {
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            current = iterativeImprovement(current, tempSA);
+            iterativeImprovement(current, tempSA, this.rand, selector);
             if (current.getFitness() < best.getFitness()) {
-                best = current;
+                // if new best solution is available, publish it. The solution file is written only by the holder
+                best = new Solution(current, false);
+                this.bestHolder.offer(best);
             }
 
             if (tempSA > 0) {
@@ -197,23 +389,273 @@ public class Solver {
 
             it++;
         }
+        if (this.nbhPool != null) {
+            this.nbhPool.shutdownNow();
+        }
+        if (this.verbose && selector != null) {
+            System.out.println("\nNeighborhood productivity: " + selector);
+        }
+        System.out.println("Best obj function value: " + best.getFitness());
+    }
+
+    /**
+     * Parallel tempering (replica exchange): `nReplicas` solutions are improved concurrently with iterativeImprovement()
+     * at fixed temperatures, geometrically spaced between PT_MIN_TEMP and `maxTemp`. After every sweep, replicas
+     * at neighboring temperatures exchange their solutions with the Metropolis criterion, so that good solutions
+     * found at high temperatures are refined at the low ones. Since worsening is measured in percentage
+     * (see simulatedAnnealingProb()) the ladder does not depend on the instance.
+     *
+     * @param maxTemp   temperature of the hottest replica
+     * @param nReplicas number of replicas (at least 2), each one running on its own thread
+     */
+    public void solvePT(double maxTemp, int nReplicas) throws Exception {
+        if (Double.isInfinite(maxTemp)) {
+            // no time limit: use the temperature of a 300 seconds run
+            maxTemp = 2.5 * 300;
+        }
+        double[] temps = new double[nReplicas];
+        Solution[] replicas = new Solution[nReplicas];
+        Random[] rands = new Random[nReplicas];
+        // each replica learns its own productivity of the neighborhoods, which depends on the temperature
+        OperatorSelector[] selectors = new OperatorSelector[nReplicas];
+        for (int i = 0; i < nReplicas; i++) {
+            if (this.adaptive) {
+                selectors[i] = new OperatorSelector(LocalSearch.NeighStructures.values());
+            }
+            temps[i] = PT_MIN_TEMP * Math.pow(maxTemp / PT_MIN_TEMP, (double) i / (nReplicas - 1));
+            rands[i] = new Random(this.rand.nextLong());
+            replicas[i] = Solution.weightedSolution(this.instance, true, rands[i]);
+        }
+
+        Solution best = replicas[0];
+        for (Solution replica : replicas) {
+            if (replica.getFitness() < best.getFitness()) {
+                best = replica;
+            }
+        }
+        best = new Solution(best, false);
+        this.bestHolder.offer(best);
+        Logger logger = this.verbose ? new Logger() : null;
+
+        if (this.verbose) {
+            System.out.println("Parallel tempering set up: TEMPS=" + Arrays.toString(temps));
+        }
+        System.out.println("Solving instance " + instance.getInstanceName() + "...");
+
+        if (this.nbhThreads > 1) {
+            this.nbhPool = new ForkJoinPool(this.nbhThreads);
+        }
+        ExecutorService replicasPool = Executors.newFixedThreadPool(nReplicas);
+        int[] exchanges = new int[nReplicas - 1];
+
+        try {
+            int round = 1;
+            while (!Thread.currentThread().isInterrupted()) {
+                // each replica runs a sweep at its own temperature and returns the best solution it has found
+                List<Callable<Solution>> sweeps = new ArrayList<>(nReplicas);
+                for (int i = 0; i < nReplicas; i++) {
+                    final int r = i;
+                    sweeps.add(() -> {
+                        Solution replicaBest = null;
+                        for (int it = 0; it < PT_SWEEP && !Thread.currentThread().isInterrupted(); it++) {
+                            iterativeImprovement(replicas[r], temps[r], rands[r], selectors[r]);
+                            if (replicaBest == null || replicas[r].getFitness() < replicaBest.getFitness()) {
+                                replicaBest = new Solution(replicas[r], false);
+                            }
+                        }
+                        return replicaBest;
+                    });
+                }
+                for (Future<Solution> sweep : replicasPool.invokeAll(sweeps)) {
+                    Solution replicaBest = sweep.get();
+                    if (replicaBest != null && replicaBest.getFitness() < best.getFitness()) {
+                        best = replicaBest;
+                        this.bestHolder.offer(best);
+                    }
+                }
+
+                // exchange between neighboring temperatures, alternating even and odd pairs
+                for (int i = round % 2; i + 1 < nReplicas; i += 2) {
+                    double pick = this.rand.nextDouble();
+                    if (pick < exchangeProb(replicas[i].getFitness(), temps[i],
+                            replicas[i + 1].getFitness(), temps[i + 1])) {
+                        Solution tmp = replicas[i];
+                        replicas[i] = replicas[i + 1];
+                        replicas[i + 1] = tmp;
+                        exchanges[i]++;
+                    }
+                }
+
+                if (this.verbose) {
+                    logger.appendCurrentBest(replicas[0].getFitness(), replicas[0].getNeighborhoodOrigin(), null);
+                    System.out.print("Round: " + round + " | Best: " + best.getFitness() +
+                            " | Exchanges: " + Arrays.toString(exchanges) + "             \r");
+                }
+                round++;
+            }
+        } catch (InterruptedException e) {
+            // time limit reached while waiting for the sweeps
+        } finally {
+            replicasPool.shutdownNow();
+            if (this.nbhPool != null) {
+                this.nbhPool.shutdownNow();
+            }
+        }
+        System.out.println("Best obj function value: " + best.getFitness());
+    }
+
+    /**
+     * Tabu search: at each iteration the best admissible move of a single exam to another available time-slot is
+     * applied, even if it worsens the solution. Moves are evaluated by delta, in parallel over the exams if
+     * neighborhood threads are enabled. Moving an exam back to a time-slot it has left is tabu for a number of
+     * iterations (the tenure, stored in a nExams x nTimeslots array as the last iteration in which the move is
+     * tabu), unless it leads to a new best solution (aspiration). After TABU_RESTART iterations without improvements
+     * the search restarts from the best solution, perturbed with TABU_PERTURBATION random Kempe chain moves. The
+     * choice of the moves is deterministic, only the initial solution, the tenures and the perturbations come from
+     * the (seeded) generator of the solver.
+     */
+    public void solveTabu() throws Exception {
+        Solution current = Solution.weightedSolution(this.instance, true, this.rand);
+        Solution best = new Solution(current, false);
+        this.bestHolder.offer(best);
+        Logger logger = this.verbose ? new Logger() : null;
+
+        int nExams = this.instance.getExams().length;
+        int nTimeslots = this.instance.getnTimeslots();
+        int[] tabuUntil = new int[nExams * nTimeslots];
+        // best admissible time-slot of each exam (-1 if none) and its delta
+        int[] candidateTS = new int[nExams];
+        double[] candidateDelta = new double[nExams];
+        int tenure = TABU_TENURE + nExams / 20;
+
+        if (this.verbose) {
+            System.out.println("Tabu search set up: TENURE=" + tenure + "-" + (tenure + TABU_TENURE - 1) +
+                    ", RESTART=" + TABU_RESTART);
+        }
+        System.out.println("Solving instance " + instance.getInstanceName() + "...");
+
+        if (this.nbhThreads > 1) {
+            this.nbhPool = new ForkJoinPool(this.nbhThreads);
+        }
+
+        int it = 1;
+        int lastImprovement = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (this.verbose) {
+                    logger.appendCurrentBest(current.getFitness(), current.getNeighborhoodOrigin(), null);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            final Solution solution = current;
+            final int iteration = it;
+            // a tabu move is admissible if the solution becomes better than the best one
+            final double aspiration = best.getFitness() - current.getFitness();
+            IntConsumer evaluate = e -> {
+                int from = solution.getT()[e] - 1;
+                double penalty = solution.getPenalty(e);
+                candidateTS[e] = -1;
+                candidateDelta[e] = Double.MAX_VALUE;
+                for (int ts = 0; ts < nTimeslots; ts++) {
+                    if (ts == from || !solution.isTimeslotAvailable(e, ts)) {
+                        continue;
+                    }
+                    double delta = solution.getPlacementPenalty(e, ts) - penalty;
+                    if (delta < candidateDelta[e] && (tabuUntil[e * nTimeslots + ts] < iteration || delta < aspiration)) {
+                        candidateTS[e] = ts;
+                        candidateDelta[e] = delta;
+                    }
+                }
+            };
+            if (this.nbhPool == null) {
+                for (int e = 0; e < nExams; e++) {
+                    evaluate.accept(e);
+                }
+            } else {
+                try {
+                    this.nbhPool.submit(() -> IntStream.range(0, nExams).parallel().forEach(evaluate)).get();
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            int exam = -1;
+            for (int e = 0; e < nExams; e++) {
+                if (candidateTS[e] >= 0 && (exam < 0 || candidateDelta[e] < candidateDelta[exam])) {
+                    exam = e;
+                }
+            }
+            if (exam >= 0) {
+                int from = current.getT()[exam] - 1;
+                new Move(current, new int[] {exam}, new int[] {candidateTS[exam]}, 2).apply(current);
+                tabuUntil[exam * nTimeslots + from] = it + tenure + this.rand.nextInt(TABU_TENURE);
+            }
+
+            if (current.getFitness() < best.getFitness()) {
+                best = new Solution(current, false);
+                this.bestHolder.offer(best);
+                lastImprovement = it;
+            } else if (it - lastImprovement >= TABU_RESTART) {
+                // the search is deterministic: the best solution is perturbed to avoid repeating the same path
+                current = new Solution(best);
+                for (int k = 0; k < TABU_PERTURBATION; k++) {
+                    LocalSearch.genMove(current, LocalSearch.NeighStructures.N9, this.rand).apply(current);
+                }
+                Arrays.fill(tabuUntil, 0);
+                lastImprovement = it;
+            }
+
+            if (this.verbose && it % 100 == 0) {
+                System.out.print("Iteration: " + it + " | Best: " + best.getFitness() + "             \r");
+            }
+            it++;
+        }
+        if (this.nbhPool != null) {
+            this.nbhPool.shutdownNow();
+        }
         System.out.println("Best obj function value: " + best.getFitness());
     }
 
     /**
-     * Generate an improved child solution. If simulated annealing is enabled (temp > 0) also worsening
-     * solutions are accepted with a certain probability
+     * Metropolis criterion for the exchange of the solutions of two replicas. Energies are compared in percentage,
+     * as in simulatedAnnealingProb(). Returns 1 if the hotter replica holds the better solution
      *
-     * @param parent    parent solution
+     * @param energy1   objective value of the colder replica
+     * @param temp1     temperature of the colder replica
+     * @param energy2   objective value of the hotter replica
+     * @param temp2     temperature of the hotter replica
+     * @return          double in (0,1]
+     */
+    private double exchangeProb(double energy1, double temp1, double energy2, double temp2) {
+        double deltaRatio = (energy1 - energy2) / Math.min(energy1, energy2) * 100;
+        return Math.min(1.0, Math.exp((1 / temp1 - 1 / temp2) * deltaRatio));
+    }
+
+    /**
+     * Improve the current solution in place. A move is generated from every neighborhood structure and evaluated
+     * without modifying the solution, then only the best one is applied. If simulated annealing is enabled
+     * (temp > 0) also worsening moves are accepted with a certain probability
+     *
+     * @param current   current solution, modified in place
      * @param tempSA    if simulated annealing is desired. Otherwise give any non-positive number
-     * @return          new solution
+     * @param rand      generator for the random choices
+     * @return          true if a move has been applied
      */
-    private Solution iterativeImprovement(Solution parent, double tempSA) {
-        int N_NEIGH_STR = LocalSearch.NeighStructures.values().length;
-        Solution[] twins = new Solution[N_NEIGH_STR];
+    boolean iterativeImprovement(Solution current, double tempSA, Random rand) {
+        return this.iterativeImprovement(current, tempSA, rand, null);
+    }
 
-        double twinsBestF = Double.MAX_VALUE;
-        int bestTwinIdx = 0;
+    /**
+     * Same as iterativeImprovement(Solution, double, Random), but if a selector is given only ADAPTIVE_DRAWS
+     * neighborhood structures chosen by the selector are explored, and the selector is updated with the CPU time
+     * they took and the improvement they obtained
+     *
+     * @param selector  adaptive selection of the neighborhoods, null to explore the default ones
+     */
+    boolean iterativeImprovement(Solution current, double tempSA, Random rand, OperatorSelector selector) {
+        Move bestMove = null;
 
         LocalSearch.NeighStructures[] usedNbh = {LocalSearch.NeighStructures.N1,
             LocalSearch.NeighStructures.N3, LocalSearch.NeighStructures.N4, LocalSearch.NeighStructures.N7,
@@ -223,43 +665,102 @@ public class Solver {
         // TODO change for considering all neighborhood structures
 //         LocalSearch.NeighStructures[] usedNbh = LocalSearch.NeighStructures.values();
 
-        for (LocalSearch.NeighStructures k: usedNbh) {
+        int[] selected = null;
+        long[] nanos = null;
+        if (selector != null) {
+            selected = selector.select(ADAPTIVE_DRAWS, rand);
+            usedNbh = new LocalSearch.NeighStructures[selected.length];
+            for (int i = 0; i < selected.length; i++) {
+                usedNbh[i] = selector.getOperator(selected[i]);
+            }
+            nanos = new long[selected.length];
+        }
+
+        Move[] moves = this.genMoves(current, usedNbh, rand, nanos);
+        if (moves == null) {
+            return false;
+        }
 
-            twins[k.ordinal()] = LocalSearch.genImprovedSolution(parent, k);
-            double tmpScore = twins[k.ordinal()].getFitness();
-            if (tmpScore < twinsBestF && tmpScore != parent.getFitness()) {
-                twinsBestF = tmpScore;
-                bestTwinIdx = k.ordinal();
+        for (Move move : moves) {
+            // moves which do not change the objective value are not considered
+            if (move.getDelta() != 0 && (bestMove == null || move.getDelta() < bestMove.getDelta())) {
+                bestMove = move;
             }
         }
 
-        Solution bestSolution;
+        if (bestMove == null) {
+            return false;
+        }
 
-        if (twinsBestF < parent.getFitness()) {
-            bestSolution = twins[bestTwinIdx];
-//            System.out.println("better N" + (bestTwinIdx+1));
+        boolean accepted;
+        if (bestMove.getDelta() < 0) {
+            accepted = true;
+//            System.out.println("better N" + bestMove.getNeighborhood());
+        } else if (tempSA > 0) {
+            double pick = rand.nextDouble();
+            double acceptanceProb = simulatedAnnealingProb(current.getFitness(),
+                    current.getFitness() + bestMove.getDelta(), tempSA);
+            accepted = pick < acceptanceProb;
+//            System.out.println("worse N" + bestMove.getNeighborhood() + " delta: " + bestMove.getDelta());
         } else {
-            if (tempSA > 0) {
-                double pick = Math.random();
-                double acceptanceProb = simulatedAnnealingProb(parent.getFitness(), twinsBestF, tempSA);
-//                if (acceptanceProb<1) {
-//                    System.out.println(pick + " XXX " + acceptanceProb);
-//                }
-
-                if (pick < acceptanceProb) {
-                    bestSolution = twins[bestTwinIdx];
-//                System.out.println("worse N" + (bestTwinIdx+1) + " delta: " + (twinsBestF - parent.getFitness()));
-                } else {
-                    bestSolution = parent;
-//                System.out.println("nochange");
-                }
-            } else {
-                bestSolution = parent;
+            accepted = false;
+        }
+
+        if (accepted) {
+            bestMove.apply(current);
+        }
+        if (selector != null) {
+            // only the applied move is credited with its improvement
+            for (int i = 0; i < moves.length; i++) {
+                boolean improved = accepted && moves[i] == bestMove && bestMove.getDelta() < 0;
+                selector.update(selected[i], nanos[i], improved ? -bestMove.getDelta() : 0);
             }
+        }
+        return accepted;
+    }
 
+    /**
+     * Generate a move from each neighborhood structure, concurrently if neighborhood threads are enabled
+     *
+     * @param nanos if not null, filled with the time taken by each neighborhood: CPU time of the thread if they are
+     *              generated sequentially, wall-clock time if they are generated concurrently
+     * @return      the moves, null if the thread has been interrupted
+     */
+    private Move[] genMoves(Solution current, LocalSearch.NeighStructures[] usedNbh, Random rand, long[] nanos) {
+        if (this.nbhPool == null) {
+            Move[] moves = new Move[usedNbh.length];
+            for (int i = 0; i < usedNbh.length; i++) {
+                long start = nanos != null ? OperatorSelector.cpuTime() : 0;
+                moves[i] = LocalSearch.genMove(current, usedNbh[i], this.getExploration(usedNbh[i]), rand);
+                if (nanos != null) {
+                    nanos[i] = OperatorSelector.cpuTime() - start;
+                }
+            }
+            return moves;
         }
 
-        return bestSolution;
+        // the lazy fitness must be computed before sharing the solution between threads
+        current.getFitness();
+        try {
+            return this.nbhPool.submit(() -> IntStream.range(0, usedNbh.length).parallel()
+                    .mapToObj(i -> {
+                        // the scans split their candidates among the workers of the pool, so the CPU time of this
+                        // thread would miss most of their work, while the wall-clock time covers all of it
+                        long start = nanos != null ? System.nanoTime() : 0;
+                        Move move = LocalSearch.genMove(current, usedNbh[i], this.getExploration(usedNbh[i]),
+                                ThreadLocalRandom.current());
+                        if (nanos != null) {
+                            nanos[i] = System.nanoTime() - start;
+                        }
+                        return move;
+                    })
+                    .toArray(Move[]::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     /**
@@ -282,6 +783,62 @@ public class Solver {
         }
     }
 
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getNReplicas() {
+        return nReplicas;
+    }
+
+    public void setNReplicas(int nReplicas) {
+        this.nReplicas = nReplicas;
+    }
+
+    public int getNIslands() {
+        return nIslands;
+    }
+
+    public void setNIslands(int nIslands) {
+        this.nIslands = nIslands;
+    }
+
+    public void setSelection(GeneticAlgorithms.ParentSelection selection) {
+        this.selection = selection;
+    }
+
+    public void setCrossover(GeneticAlgorithms.Crossover crossover) {
+        this.crossover = crossover;
+    }
+
+    public void setSeed(long seed) {
+        this.rand = new Random(seed);
+    }
+
+    public void setBestHolder(BestSolutionHolder bestHolder) {
+        this.bestHolder = bestHolder;
+    }
+
+    public LocalSearch.Exploration getExploration(LocalSearch.NeighStructures neighStruct) {
+        return this.explorations.getOrDefault(neighStruct, LocalSearch.Exploration.RANDOM);
+    }
+
+    public void setExploration(LocalSearch.NeighStructures neighStruct, LocalSearch.Exploration exploration) {
+        this.explorations.put(neighStruct, exploration);
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public void setNbhThreads(int nbhThreads) {
+        this.nbhThreads = nbhThreads;
+    }
+
     public double getSolvingTime() {
         return solvingTime;
     }
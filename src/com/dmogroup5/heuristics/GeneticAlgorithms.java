@@ -1,7 +1,15 @@
 package com.dmogroup5.heuristics;
 
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.RouletteWheel;
 import com.dmogroup5.utils.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Random;
 
 public class GeneticAlgorithms {
@@ -12,55 +20,201 @@ public class GeneticAlgorithms {
      *
      * @param parent    starting solution
      * @param ratio     percentage of the course to be reassigned
+     * @param rand      generator for the random choices
      * @return          mutated solution
      */
-    public static Solution mutateSolution(Solution parent, double ratio) {
+    public static Solution mutateSolution(Solution parent, double ratio, Random rand) {
         int totExams = parent.getInstance().getExams().length;
         int nCandidates = (int) Math.ceil(totExams * ratio);
 
         Solution mutatedSol = new Solution(parent);
+        int[] movedExams = new int[nCandidates];
 
         for (int i = 0; i < nCandidates; i++) {
-            int exam = mutatedSol.popRandExam();
+            int exam = mutatedSol.popRandExam(rand);
             boolean examAssigned;
             do {
-                examAssigned = mutatedSol.placeExam(exam, true);
+                examAssigned = mutatedSol.placeExam(exam, rand);
             } while (!examAssigned);
+            movedExams[i] = exam;
         }
-        mutatedSol.resetAttributes();
+
+        int[] newTimeslots = new int[nCandidates];
+        for (int i = 0; i < nCandidates; i++) {
+            newTimeslots[i] = mutatedSol.getT()[movedExams[i]] - 1;
+        }
+        mutatedSol.setFitnessByDelta(parent, parent.getMoveDelta(movedExams, newTimeslots));
         return mutatedSol;
     }
 
+    // recombination of two parents, see crossover()
+    public enum Crossover {
+        NONE, // the child is a copy of the first parent
+        TIMESLOTS, // each time-slot is inherited as a whole from one of the parents
+        UNIFORM // each exam takes the time-slot of one of the parents
+    }
+
     /**
-     * Selection of the new (fixed-sized) generation individuals from the current pool with the new children.
-     * Solutions are selected randomly with a probability which is proportional to their fitness score.
+     * Recombine two solutions on their exam -> time-slot encoding. The child is built from a copy of the first
+     * parent, only the exams taking their time-slot from the second one are moved:
+     * - TIMESLOTS: a random half of the time-slots keeps the exams of the first parent, the other ones receive the
+     *   exams that the second parent puts there. Both are conflict-free, since they are (subsets of) time-slots of
+     *   feasible solutions. The exams left out (in a kept time-slot of the second parent and in a replaced one of
+     *   the first) are repaired.
+     * - UNIFORM: each exam takes the time-slot of a random parent. The exams which are in conflict there go back to
+     *   their time-slot in the first parent if possible, otherwise they are repaired.
+     * The repair (see below) always succeeds, so the child is feasible and the cost is linear in the size of the
+     * conflict graph (plus O(nTimeslots) for each repaired exam)
      *
-     * @param pool      set of total current solutions: previous generation individuals plus new generated children
-     * @param popSize   size of the population to be maintained
-     * @return          array of the solutions of the new generation population
+     * @param first     parent whose copy is modified, the fitness of the child is computed again
+     * @param second    other parent, not modified
+     * @param type      crossover operator
+     * @return          feasible child
      */
-    public static Solution[] rouletteWheelSelection(List<Solution> pool, int popSize) throws Exception {
-        double max = 0;
-        for (Solution individual : pool) {
-            max += individual.getFitness();
+    public static Solution crossover(Solution first, Solution second, Crossover type, Random rand) {
+        Solution child = new Solution(first);
+        if (type == Crossover.NONE || first == second) {
+            return child;
+        }
+        int[] firstT = first.getT();
+        int[] secondT = second.getT();
+        int nExams = firstT.length;
+
+        // exams taking the time-slot of the second parent, or moved by the time-slot inheritance
+        int[] moved = new int[nExams];
+        int nMoved = 0;
+        boolean[] kept = null;
+        if (type == Crossover.TIMESLOTS) {
+            kept = new boolean[first.getNTimeslots()];
+            for (int ts = 0; ts < kept.length; ts++) {
+                kept[ts] = rand.nextBoolean();
+            }
+            for (int e = 0; e < nExams; e++) {
+                if (!kept[firstT[e] - 1] && firstT[e] != secondT[e]) {
+                    moved[nMoved++] = e;
+                }
+            }
+        } else {
+            for (int e = 0; e < nExams; e++) {
+                if (firstT[e] != secondT[e] && rand.nextBoolean()) {
+                    moved[nMoved++] = e;
+                }
+            }
+        }
+
+        for (int i = 0; i < nMoved; i++) {
+            child.popExam(moved[i], firstT[moved[i]] - 1);
+        }
+        // exams which cannot be placed in their time-slot from the crossover
+        int[] repairs = new int[nExams];
+        int nRepairs = 0;
+        for (int i = 0; i < nMoved; i++) {
+            int exam = moved[i];
+            int ts = secondT[exam] - 1;
+            if (kept != null ? kept[ts] : !child.placeExam(exam, ts) && !child.placeExam(exam, firstT[exam] - 1)) {
+                repairs[nRepairs++] = exam;
+            } else if (kept != null) {
+                child.placeExam(exam, ts);
+            }
+        }
+
+        // each exam goes to its best available time-slot. If there is none, it goes back to its time-slot in the
+        // first parent and the exams in conflict with it there (which cannot be in their own time-slot of the first
+        // parent) are removed and repaired in the same way. Exams back in the time-slot of the first parent are never
+        // removed again, so each exam is repaired at most twice
+        Instance instance = child.getInstance();
+        int[] stack = new int[nExams];
+        int top = 0;
+        for (int i = 0; i < nRepairs; i++) {
+            int exam = repairs[i];
+            int ts = child.getBestTimeslot(exam);
+            if (ts < 0 || !child.placeExam(exam, ts)) {
+                stack[top++] = exam;
+            }
+        }
+        while (top > 0) {
+            int exam = stack[--top];
+            int ts = firstT[exam] - 1;
+            for (int k = instance.getNeighborsStart(exam); k < instance.getNeighborsEnd(exam); k++) {
+                int ej = instance.getNeighbor(k);
+                if (child.popExam(ej, ts)) {
+                    stack[top++] = ej;
+                }
+            }
+            child.placeExam(exam, ts);
         }
+        child.resetAttributes();
+        return child;
+    }
+
+    // weighting of the parents selection, see select()
+    public enum ParentSelection {
+        RANK, // roulette-wheel with linear ranking: the best of n solutions has weight n, the worst 1
+        INVERTED, // roulette-wheel with weights inversely proportional to the objective value
+        TOURNAMENT // best of TOURNAMENT_SIZE solutions picked at random
+    }
+
+    public static final int TOURNAMENT_SIZE = 3;
 
-        Solution[] newPopulation = new Solution[popSize];
-        double[] randPoints = new Random().doubles(popSize, 0, max).toArray();
-        for (int i = 0; i < popSize; i++) {
-            int pickIdx = 0;
-            double current = pool.get(pickIdx).getFitness();
-            while (current < randPoints[i]) {
-                pickIdx += 1;
-                current += pool.get(pickIdx).getFitness();
+    /**
+     * Select (with repetitions) the solutions which generate the children. Since the objective is minimised, better
+     * solutions are more likely to be selected with every weighting. For the roulette-wheel weightings the
+     * cumulative weights are computed once, then each pick costs O(log(pool size)), see RouletteWheel
+     *
+     * @param pool      candidate solutions, with their fitness already computed
+     * @param n         number of solutions to be selected
+     * @param selection weighting of the candidates
+     * @param rand      generator of the random picks
+     * @return          array of the selected solutions
+     */
+    public static Solution[] select(List<Solution> pool, int n, ParentSelection selection, Random rand) {
+        Solution[] selected = new Solution[n];
+        if (selection == ParentSelection.TOURNAMENT) {
+            for (int i = 0; i < n; i++) {
+                Solution winner = pool.get(rand.nextInt(pool.size()));
+                for (int k = 1; k < TOURNAMENT_SIZE; k++) {
+                    Solution challenger = pool.get(rand.nextInt(pool.size()));
+                    if (challenger.getFitness() < winner.getFitness()) {
+                        winner = challenger;
+                    }
+                }
+                selected[i] = winner;
             }
+            return selected;
+        }
 
-            newPopulation[i] = pool.get(pickIdx);
+        double[] weights = new double[pool.size()];
+        if (selection == ParentSelection.RANK) {
+            Integer[] order = new Integer[pool.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> pool.get(i).getFitness()));
+            for (int r = 0; r < order.length; r++) {
+                weights[order[r]] = order.length - r;
+            }
+        } else {
+            for (int i = 0; i < weights.length; i++) {
+                // an optimal solution (no conflicts at all) takes almost all the weight
+                weights[i] = 1 / Math.max(pool.get(i).getFitness(), 1e-12);
+            }
         }
 
-        return newPopulation;
+        RouletteWheel wheel = new RouletteWheel(weights);
+        for (int i = 0; i < n; i++) {
+            selected[i] = pool.get(wheel.next(rand));
+        }
+        return selected;
     }
 
+    /**
+     * Selection of the best solutions of the pool. Duplicate timetables (by hash, see Solution.getHash()) are taken
+     * only if there are not enough distinct ones, so that identical elites do not fill the population
+     *
+     * @param pool      candidate solutions, sorted in place by fitness
+     * @param popSize   number of solutions to be selected
+     * @return          the best distinct solutions sorted by fitness, followed by the best duplicates if needed
+     */
     public static Solution[] bestFirstSelection(List<Solution> pool, int popSize) {
         pool.sort((solA, solB) -> {
                 double x = solA.getFitness();
@@ -69,8 +223,21 @@ public class GeneticAlgorithms {
         });
 
         Solution[] bestFirst = new Solution[popSize];
-        for (int i = 0; i < popSize; i++) {
-            bestFirst[i] = pool.get(i);
+        Set<Long> hashes = new HashSet<>();
+        List<Solution> duplicates = new ArrayList<>();
+        int n = 0;
+        for (Solution solution : pool) {
+            if (n == popSize) {
+                break;
+            }
+            if (hashes.add(solution.getHash())) {
+                bestFirst[n++] = solution;
+            } else {
+                duplicates.add(solution);
+            }
+        }
+        for (int i = 0; n < popSize; i++) {
+            bestFirst[n++] = duplicates.get(i);
         }
         return bestFirst;
     }
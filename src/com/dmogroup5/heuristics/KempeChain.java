@@ -0,0 +1,138 @@
+package com.dmogroup5.heuristics;
+
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+
+import java.util.Arrays;
+
+/**
+ * Kempe chain construction: the connected component, in the conflict graph restricted to two time-slots, of the
+ * exam to be moved. Swapping the time-slots of all the exams of the chain keeps the solution feasible.
+ * The chain is built with a breadth first visit over the sparse conflict graph, with a flat int queue (each exam
+ * is queued at most once) and visit marks stamped with a generation number, so nothing has to be cleared or
+ * allocated between two chains. Each thread has its own scratch arrays. The objective variation is computed in the
+ * same pass, so a chain can be evaluated without building its move (see delta()).
+ */
+class KempeChain {
+
+    private static final ThreadLocal<KempeChain> ENGINES = ThreadLocal.withInitial(KempeChain::new);
+
+    private int[] queue = new int[0];
+    // exam e is in the current chain if stamps[e] == generation
+    private int[] stamps = new int[0];
+    private int generation = 0;
+    // number of exams of the current chain: queue[0] ... queue[size-1]
+    private int size = 0;
+
+    /**
+     * Build and evaluate the Kempe chain move of an exam, using the scratch arrays of the current thread
+     *
+     * @param exam          first exam of the chain
+     * @param examTS        time-slot of the exam (from 0 to nTimeslots-1)
+     * @param newTS         time-slot where the exam is moved, its neighbors in newTS are moved to examTS and so on
+     * @param neighborhood  number of the neighborhood structure which generated the move
+     * @return              move of all the exams of the chain, with its objective variation
+     */
+    static Move move(Solution solution, int exam, int examTS, int newTS, int neighborhood) {
+        KempeChain engine = ENGINES.get();
+        long delta = engine.visit(solution, exam, examTS, newTS);
+
+        int[] T = solution.getT();
+        int[] chainExams = Arrays.copyOf(engine.queue, engine.size);
+        int[] chainTimeslots = new int[engine.size];
+        for (int c = 0; c < engine.size; c++) {
+            chainTimeslots[c] = T[chainExams[c]] == examTS + 1 ? newTS : examTS;
+        }
+        return new Move(solution, chainExams, chainTimeslots, (double) delta / solution.getInstance().getnStudents(),
+                neighborhood);
+    }
+
+    /**
+     * Objective variation of the Kempe chain move of an exam, as move(...).getDelta() but without allocating the
+     * move, e.g. for scanning the chains of an exam towards all the time-slots
+     */
+    static double delta(Solution solution, int exam, int examTS, int newTS) {
+        return (double) ENGINES.get().visit(solution, exam, examTS, newTS) / solution.getInstance().getnStudents();
+    }
+
+    /**
+     * Build the chain in queue[0] ... queue[size-1]
+     *
+     * @return  objective variation of the move, not divided by the number of students
+     */
+    private long visit(Solution solution, int exam, int examTS, int newTS) {
+        Instance instance = solution.getInstance();
+        int[] T = solution.getT();
+        this.reset(T.length);
+
+        // breadth first visit: the chain is the sequence of all the exams ever queued
+        boolean table = solution.hasConflictTable();
+        int head = 0;
+        int tail = 0;
+        this.queue[tail++] = exam;
+        this.stamps[exam] = this.generation;
+        while (head < tail) {
+            int ei = this.queue[head++];
+            // exams in the other time-slot of the chain (1-based as in T)
+            int other = T[ei] == examTS + 1 ? newTS + 1 : examTS + 1;
+            if (table && solution.getSlotConflicts(ei, other - 1) == 0) {
+                continue;
+            }
+            for (int k = instance.getNeighborsStart(ei); k < instance.getNeighborsEnd(ei); k++) {
+                int ej = instance.getNeighbor(k);
+                if (T[ej] == other && this.stamps[ej] != this.generation) {
+                    this.stamps[ej] = this.generation;
+                    this.queue[tail++] = ej;
+                }
+            }
+        }
+
+        // Objective variation: the exams of the chain exchange time-slots, so the distance between two of them
+        // does not change and only the conflicts with the exams outside the chain are counted. In a feasible
+        // solution these are all in the other time-slots, so with the conflict table they are read from the
+        // time-slots around the two of the chain instead of visiting the neighbors
+        this.size = tail;
+        int nTimeslots = solution.getNTimeslots();
+        int first = Math.max(0, Math.min(examTS, newTS) - 5);
+        int last = Math.min(nTimeslots - 1, Math.max(examTS, newTS) + 5);
+        long delta = 0;
+        for (int c = 0; c < tail; c++) {
+            int ei = this.queue[c];
+            int from = T[ei];
+            int to = from == examTS + 1 ? newTS + 1 : examTS + 1;
+            if (table) {
+                for (int ts = first; ts <= last; ts++) {
+                    if (ts != examTS && ts != newTS) {
+                        delta += (long) solution.getSlotConflicts(ei, ts) *
+                                (Solution.proximityWeight(to, ts + 1) - Solution.proximityWeight(from, ts + 1));
+                    }
+                }
+                continue;
+            }
+            for (int k = instance.getNeighborsStart(ei); k < instance.getNeighborsEnd(ei); k++) {
+                int ej = instance.getNeighbor(k);
+                if (this.stamps[ej] != this.generation && T[ej] > 0) {
+                    delta += (long) instance.getNeighborConflicts(k) *
+                            (Solution.proximityWeight(to, T[ej]) - Solution.proximityWeight(from, T[ej]));
+                }
+            }
+        }
+
+        return delta;
+    }
+
+    /**
+     * Start a new chain: a new generation invalidates all the previous marks at once
+     */
+    private void reset(int nExams) {
+        if (this.stamps.length < nExams) {
+            this.queue = new int[nExams];
+            this.stamps = new int[nExams];
+            this.generation = 0;
+        }
+        if (++this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.stamps, 0);
+            this.generation = 1;
+        }
+    }
+}
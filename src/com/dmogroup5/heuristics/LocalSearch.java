@@ -1,10 +1,16 @@
 package com.dmogroup5.heuristics;
 
+import com.dmogroup5.utils.Instance;
 import com.dmogroup5.utils.Solution;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.OptionalInt;
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
 
 public class LocalSearch {
 
@@ -23,69 +29,247 @@ public class LocalSearch {
         N11 // Apply kempe-chain taking the highest penalty course from a random 20% selection of the courses
     }
 
-    public static Solution genImprovedSolution(Solution oldSolution, NeighStructures neighStruct) {
-        Solution newSolution = new Solution(oldSolution);
+    // exploration of a neighborhood structure
+    public enum Exploration {
+        RANDOM, // Generate a single random move, as described above
+        FIRST, // Scan the neighborhood from a random point and take the first improving move
+        BEST // Scan the whole neighborhood and take the best move
+    }
+
+    /**
+     * Generate and evaluate a move of the given neighborhood structure. The solution is not modified, so moves
+     * of different neighborhoods can be generated concurrently from the same solution (random numbers come from
+     * thread-local generators)
+     *
+     * @param solution      current solution
+     * @param neighStruct   neighborhood structure
+     * @return              move which can be applied to the solution
+     */
+    public static Move genMove(Solution solution, NeighStructures neighStruct) {
+        return genMove(solution, neighStruct, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Same as genMove(Solution, NeighStructures), with all the random choices taken from the given generator
+     */
+    public static Move genMove(Solution solution, NeighStructures neighStruct, Random rand) {
+        Move move = null;
         switch (neighStruct) {
             case N1:
-                newSolution = swapRandExams(oldSolution);
-                newSolution.setNeighborhoodOrigin(1);
+                move = swapRandExams(solution, rand);
                 break;
             case N2:
-                double r = 1. / oldSolution.getInstance().getExams().length;
-                newSolution = GeneticAlgorithms.mutateSolution(oldSolution, r);
-                newSolution.setNeighborhoodOrigin(2);
+                move = moveRandExam(solution, rand);
                 break;
             case N3:
-                newSolution = swapRandTimeslots(oldSolution);
-                newSolution.setNeighborhoodOrigin(3);
+                move = swapRandTimeslots(solution, rand);
                 break;
             case N4:
-                newSolution = moveRandTimeslot(oldSolution);
-                newSolution.setNeighborhoodOrigin(4);
+                move = moveRandTimeslot(solution, rand);
                 break;
             case N5:
-                newSolution = moveCriticalExam(oldSolution, 0.1, false);
-                newSolution.setNeighborhoodOrigin(5);
+                move = moveCriticalExam(solution, 0.1, false, 5, rand);
                 break;
             case N6:
-                newSolution = moveCriticalExam(oldSolution, 0.2, false);
-                newSolution.setNeighborhoodOrigin(6);
+                move = moveCriticalExam(solution, 0.2, false, 6, rand);
                 break;
             case N7:
-                newSolution = moveCriticalExam(oldSolution, 0.1, true);
-                newSolution.setNeighborhoodOrigin(7);
+                move = moveCriticalExam(solution, 0.1, true, 7, rand);
                 break;
             case N8:
-                newSolution = moveCriticalExam(oldSolution, 0.2, true);
-                newSolution.setNeighborhoodOrigin(8);
+                move = moveCriticalExam(solution, 0.2, true, 8, rand);
                 break;
             case N9:
-                newSolution = kempeRandMove(oldSolution);
-                newSolution.setNeighborhoodOrigin(9);
+                move = kempeRandMove(solution, rand);
                 break;
             case N10:
-                newSolution = kempeMove(oldSolution, 0.1);
-                newSolution.setNeighborhoodOrigin(10);
+                move = kempeMove(solution, 0.1, 10, rand);
                 break;
             case N11:
-                newSolution = kempeMove(oldSolution, 0.2);
-                newSolution.setNeighborhoodOrigin(11);
+                move = kempeMove(solution, 0.2, 11, rand);
                 break;
         }
-        return newSolution;
+        return move;
     }
 
     /**
-     * N1
+     * Generate a move with the given exploration of the neighborhood structure. The neighborhoods which can be
+     * scanned (see isScannable()) are:
+     * - N2: every exam moved to its best available time-slot
+     * - N3: every pair of time-slots swapped
+     * - N9-N10-N11: every Kempe chain of the chosen exam (i.e. towards every other time-slot)
+     * The other ones, and the RANDOM exploration, draw a single random move as genMove(Solution, NeighStructures,
+     * Random). Candidates are evaluated by delta, without building their moves, and in parallel when this method runs
+     * in a fork/join pool (i.e. the solver evaluates the neighborhoods on several threads).
+     * FIRST returns an empty move if no candidate improves the solution, while BEST returns the best candidate
+     * anyway.
+     */
+    public static Move genMove(Solution solution, NeighStructures neighStruct, Exploration exploration,
+                               Random rand) {
+        if (exploration == Exploration.RANDOM || !isScannable(neighStruct)) {
+            return genMove(solution, neighStruct, rand);
+        }
+
+        boolean first = exploration == Exploration.FIRST;
+        switch (neighStruct) {
+            case N2:
+                return scanExamMoves(solution, first, rand);
+            case N3:
+                return scanTimeslotSwaps(solution, first, rand);
+            case N9:
+                int ei = rand.nextInt(solution.getInstance().getExams().length);
+                return scanKempeChains(solution, ei, solution.findExam(ei), 9, first, rand);
+            default:
+                int[] highestPenaltyExam = solution.getHighestPenaltyExam(neighStruct == NeighStructures.N10 ? 0.1 : 0.2,
+                        rand);
+                return scanKempeChains(solution, highestPenaltyExam[0], highestPenaltyExam[1],
+                        neighStruct == NeighStructures.N10 ? 10 : 11, first, rand);
+        }
+    }
+
+    /**
+     * @return true if the neighborhood structure supports the FIRST and BEST explorations
+     */
+    public static boolean isScannable(NeighStructures neighStruct) {
+        switch (neighStruct) {
+            case N2:
+            case N3:
+            case N9:
+            case N10:
+            case N11:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Choose a candidate among 0 ... n-1, visited in circular order from a random one: the one with the lowest
+     * delta (the first one found in case of ties) or, with `first`, the first one with negative delta.
+     *
+     * @param delta objective variation of each candidate, must not modify the solution
+     * @return      index of the chosen candidate, -1 if there are no candidates (or no improving ones with `first`)
+     */
+    private static int scan(int n, IntToDoubleFunction delta, boolean first, Random rand) {
+        if (n == 0) {
+            return -1;
+        }
+        int offset = rand.nextInt(n);
+        IntStream candidates = IntStream.range(0, n).map(i -> (i + offset) % n);
+        boolean parallel = ForkJoinTask.inForkJoinPool();
+        if (parallel) {
+            candidates = candidates.parallel();
+        }
+
+        if (first) {
+            IntStream improving = candidates.filter(c -> delta.applyAsDouble(c) < 0);
+            OptionalInt found = parallel ? improving.findAny() : improving.findFirst();
+            return found.orElse(-1);
+        }
+
+        double[] deltas = new double[n];
+        candidates.forEach(c -> deltas[c] = delta.applyAsDouble(c));
+        int best = offset;
+        for (int i = 1; i < n; i++) {
+            int c = (i + offset) % n;
+            if (deltas[c] < deltas[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * N2 scan: each exam is moved to its best available time-slot
+     */
+    private static Move scanExamMoves(Solution solution, boolean first, Random rand) {
+        int[] T = solution.getT();
+        int exam = scan(T.length, e -> {
+            int ts = solution.getBestTimeslot(e);
+            return ts == T[e] - 1 ? 0 : solution.getPlacementPenalty(e, ts) - solution.getPenalty(e);
+        }, first, rand);
+
+        if (exam < 0) {
+            return new Move(2);
+        }
+        return new Move(solution, new int[] {exam}, new int[] {solution.getBestTimeslot(exam)}, 2);
+    }
+
+    /**
+     * N3 scan: all the pairs of time-slots are swapped. The students in conflict between each pair of time-slots
+     * are counted once, then the delta of a swap only depends on the other time-slots (the distance between the
+     * exams of the two swapped ones does not change).
+     */
+    private static Move scanTimeslotSwaps(Solution solution, boolean first, Random rand) {
+        Instance instance = solution.getInstance();
+        int nTimeslots = solution.getNTimeslots();
+        int[] T = solution.getT();
+
+        // conflicts[a * nTimeslots + t]: students enrolled in an exam of time-slot a and in an exam of time-slot t
+        long[] conflicts = new long[nTimeslots * nTimeslots];
+        for (int e = 0; e < T.length; e++) {
+            if (T[e] == 0) {
+                continue;
+            }
+            int base = (T[e] - 1) * nTimeslots;
+            for (int k = instance.getNeighborsStart(e); k < instance.getNeighborsEnd(e); k++) {
+                int ts = T[instance.getNeighbor(k)];
+                if (ts > 0) {
+                    conflicts[base + ts - 1] += instance.getNeighborConflicts(k);
+                }
+            }
+        }
+
+        int[] pairs = new int[nTimeslots * (nTimeslots - 1) / 2];
+        int p = 0;
+        for (int a = 0; a < nTimeslots - 1; a++) {
+            for (int b = a + 1; b < nTimeslots; b++) {
+                pairs[p++] = a * nTimeslots + b;
+            }
+        }
+
+        int pair = scan(pairs.length, i -> {
+            int a = pairs[i] / nTimeslots;
+            int b = pairs[i] % nTimeslots;
+            long delta = 0;
+            for (int t = 0; t < nTimeslots; t++) {
+                if (t != a && t != b) {
+                    int variation = Solution.proximityWeight(b, t) - Solution.proximityWeight(a, t);
+                    delta += variation * (conflicts[a * nTimeslots + t] - conflicts[b * nTimeslots + t]);
+                }
+            }
+            return (double) delta / instance.getnStudents();
+        }, first, rand);
+
+        if (pair < 0) {
+            return new Move(3);
+        }
+        return swapTimeslots(solution, pairs[pair] / nTimeslots, pairs[pair] % nTimeslots);
+    }
+
+    /**
+     * N9-N10-N11 scan: the Kempe chains of the exam towards all the other time-slots
      */
-    private static Solution swapRandExams(Solution oldSolution) {
-        Solution newSolution = new Solution(oldSolution);
+    private static Move scanKempeChains(Solution solution, int exam, int examTS, int neighborhood, boolean first,
+                                        Random rand) {
+        int chain = scan(solution.getNTimeslots() - 1, i ->
+                KempeChain.delta(solution, exam, examTS, i < examTS ? i : i + 1),
+                first, rand);
+
+        if (chain < 0) {
+            return new Move(neighborhood);
+        }
+        return KempeChain.move(solution, exam, examTS, chain < examTS ? chain : chain + 1, neighborhood);
+    }
 
-        int nExams = newSolution.getInstance().getExams().length;
-        int nTimeslots = newSolution.getTimetable().length;
-        Random rand = new Random();
+    /**
+     * N1
+     */
+    private static Move swapRandExams(Solution solution, Random rand) {
+        int nExams = solution.getInstance().getExams().length;
+        int nTimeslots = solution.getNTimeslots();
         int ei = rand.nextInt(nExams);
-        int ti = newSolution.findExam(ei);
+        int ti = solution.findExam(ei);
 
         ArrayList<Integer> candidateTS = new ArrayList<>();
         for (int i = 0; i < nTimeslots; i++) {
@@ -94,72 +278,103 @@ public class LocalSearch {
             }
         }
 
-        Collections.shuffle(candidateTS);
-        outerFor:
+        Collections.shuffle(candidateTS, rand);
         for (int tj : candidateTS) {
-            for (int ej : newSolution.getTimetable()[tj]) {
-                if (newSolution.swappable(ei, ti, ej, tj)) {
-                    newSolution.popExam(ei, ti);
-                    newSolution.popExam(ej, tj);
-
-                    newSolution.placeExam(ei, tj);
-                    newSolution.placeExam(ej, ti);
-                    break outerFor;
+            for (int ej = solution.nextExamInTimeslot(tj, 0); ej >= 0; ej = solution.nextExamInTimeslot(tj, ej + 1)) {
+                if (solution.swappable(ei, ti, ej, tj)) {
+                    return new Move(solution, new int[] {ei, ej}, new int[] {tj, ti}, 1);
                 }
             }
         }
 
-        newSolution.resetAttributes();
-
-        return newSolution;
+        return new Move(1);
     }
 
     /**
-     * Random N3
+     * N2
      */
-    private static Solution swapTimeslots(Solution oldSolution, int ts1, int ts2) {
-        Solution newSolution = new Solution(oldSolution);
-        newSolution.getTimetable()[ts1] = (ArrayList) oldSolution.getTimetable()[ts2].clone();
-        newSolution.getTimetable()[ts2] = (ArrayList) oldSolution.getTimetable()[ts1].clone();
-        newSolution.resetAttributes();
+    private static Move moveRandExam(Solution solution, Random rand) {
+        int ts;
+        do {
+            ts = rand.nextInt(solution.getNTimeslots());
+        } while (solution.getTimeslotSize(ts) == 0);
 
-        return newSolution;
+        int[] exams = solution.getTimeslotExams(ts);
+        int exam = exams[rand.nextInt(exams.length)];
+
+        return new Move(solution, new int[] {exam}, new int[] {randFeasibleTimeslot(solution, exam, rand)}, 2);
+    }
+
+    /**
+     * @return a random time-slot where the exam can be moved without conflicts (possibly its current one)
+     */
+    private static int randFeasibleTimeslot(Solution solution, int exam, Random rand) {
+        boolean[] unavailable = solution.getUnavailableTimeslots(exam);
+        ArrayList<Integer> candidateTS = new ArrayList<>();
+        for (int i = 0; i < unavailable.length; i++) {
+            if (!unavailable[i]) {
+                candidateTS.add(i);
+            }
+        }
+        return candidateTS.get(rand.nextInt(candidateTS.size()));
     }
 
     /**
-     * Steepest descent version of N3
+     * Move which transfers all the exams of some time-slots into other time-slots (N3-N4)
+     *
+     * @param destination   for each time-slot, the time-slot where its exams are moved
      */
-    private static Solution swapTimeslotsSD(Solution oldSolution) {
-        int nTimeslots = oldSolution.getTimetable().length;
-        Solution bestSolution = oldSolution;
-        for (int i = 0; i < nTimeslots - 1; i++) {
-            for (int j = i + 1; j < nTimeslots; j++) {
-                Solution newSolution = LocalSearch.swapTimeslots(oldSolution, i, j);
-                if (newSolution.getFitness() < bestSolution.getFitness()) {
-                    bestSolution = newSolution;
+    private static Move timeslotsMove(Solution solution, int[] destination, int neighborhood) {
+        int nMoved = 0;
+        for (int ts = 0; ts < destination.length; ts++) {
+            if (destination[ts] != ts) {
+                nMoved += solution.getTimeslotSize(ts);
+            }
+        }
+        int[] exams = new int[nMoved];
+        int[] timeslots = new int[nMoved];
+        int i = 0;
+        for (int ts = 0; ts < destination.length; ts++) {
+            if (destination[ts] != ts) {
+                for (int e = solution.nextExamInTimeslot(ts, 0); e >= 0; e = solution.nextExamInTimeslot(ts, e + 1)) {
+                    exams[i] = e;
+                    timeslots[i] = destination[ts];
+                    i++;
                 }
             }
         }
-        return bestSolution;
+        return new Move(solution, exams, timeslots, neighborhood);
+    }
+
+    /**
+     * Random N3
+     */
+    private static Move swapTimeslots(Solution solution, int ts1, int ts2) {
+        int[] destination = new int[solution.getNTimeslots()];
+        for (int i = 0; i < destination.length; i++) {
+            destination[i] = i;
+        }
+        destination[ts1] = ts2;
+        destination[ts2] = ts1;
+
+        return timeslotsMove(solution, destination, 3);
     }
 
-    private static Solution swapRandTimeslots(Solution oldSolution) {
-        Random rand = new Random();
-        int ts1 = rand.nextInt(oldSolution.getTimetable().length);
+    private static Move swapRandTimeslots(Solution solution, Random rand) {
+        int ts1 = rand.nextInt(solution.getNTimeslots());
         int ts2;
         do {
-            ts2 = rand.nextInt(oldSolution.getTimetable().length);
+            ts2 = rand.nextInt(solution.getNTimeslots());
         } while (ts1 == ts2);
 
-        return LocalSearch.swapTimeslots(oldSolution, ts1, ts2);
+        return LocalSearch.swapTimeslots(solution, ts1, ts2);
     }
 
     /**
      * N4
      */
-    private static Solution moveRandTimeslot(Solution oldSolution) {
-        Random rand = new Random();
-        int nTimeslots = oldSolution.getTimetable().length;
+    private static Move moveRandTimeslot(Solution solution, Random rand) {
+        int nTimeslots = solution.getNTimeslots();
 
 //      randomly determine direction of the swap
         boolean forward = rand.nextBoolean();
@@ -179,38 +394,26 @@ public class LocalSearch {
             ts2 = tmpTS;
         }
 
-        Solution newSolution = new Solution(oldSolution);
-
-        ArrayList[] timetable = newSolution.getTimetable();
+        int[] destination = new int[nTimeslots];
+        for (int i = 0; i < nTimeslots; i++) {
+            destination[i] = i;
+        }
         //  clockwise rotation
         if (forward) {
-            ArrayList tmp = timetable[ts1];
-            timetable[ts1] = timetable[ts2];
-            for (int i = ts2; i > ts1 + 1; i--) {
-                timetable[i] = timetable[i-1];
+            destination[ts2] = ts1;
+            for (int i = ts1; i < ts2; i++) {
+                destination[i] = i + 1;
             }
-            timetable[ts1+1] = tmp;
         }
         //  anti-clockwise rotation
         else {
-            ArrayList tmp = timetable[ts2];
-            timetable[ts2] = timetable[ts1];
-            for (int i = ts1; i < ts2 - 1; i++) {
-                timetable[i] = timetable[i+1];
+            destination[ts1] = ts2;
+            for (int i = ts1 + 1; i <= ts2; i++) {
+                destination[i] = i - 1;
             }
-            timetable[ts2-1] = tmp;
         }
 
-        newSolution.resetAttributes();
-//        if (!newSolution.isFeasible()) {
-//            System.err.println("Solution is not feasible!");
-//        }
-//
-//        if (newSolution.getFitness() > oldSolution.getFitness()) {
-//            System.out.println("[IMPROVEMENT N4] Shift between " + ts1 + " and " + ts2);
-//        }
-
-        return newSolution;
+        return timeslotsMove(solution, destination, 4);
     }
 
     /**
@@ -220,130 +423,53 @@ public class LocalSearch {
      * @param ratio     in range (0,1): percentage of the exams to be analysed
      * @param optimize  true if exam is placed in the optimal timeslot
      */
-    private static Solution moveCriticalExam(Solution oldSolution, double ratio, boolean optimize) {
-        int[] highestPenaltyExam = oldSolution.getHighestPenaltyExam(ratio);
+    private static Move moveCriticalExam(Solution solution, double ratio, boolean optimize, int neighborhood,
+                                         Random rand) {
+        int[] highestPenaltyExam = solution.getHighestPenaltyExam(ratio, rand);
         int exam = highestPenaltyExam[0];
-        int examTS = highestPenaltyExam[1];
-
-        Solution newSolution = new Solution(oldSolution);
-        newSolution.resetAttributes();
-        newSolution.popExam(exam, examTS);
 
+        int newTS;
         if (optimize) {
-            int nTimeslots = newSolution.getTimetable().length;
-            double bestFitness = Double.MAX_VALUE;
-            int bestTimeslot = examTS;
-            for (int i = 0; i < nTimeslots; i++) {
-                if (newSolution.placeExam(exam, i)) {
-                    double obj = newSolution.getFitness();
-                    if (obj < bestFitness) {
-                        bestFitness = obj;
-                        bestTimeslot = i;
-                    }
-                    newSolution.popExam(exam, i);
-                    newSolution.resetAttributes();
-                }
-            }
-            newSolution.placeExam(exam, bestTimeslot);
+            newTS = solution.getBestTimeslot(exam);
         } else {
-            newSolution.placeExam(exam, true);
+            newTS = randFeasibleTimeslot(solution, exam, rand);
         }
-//
-//        if (!newSolution.isFeasible()) {
-//            System.err.println("Solution is not feasible!");
-//        }
-
-//        if (newSolution.getFitness() > oldSolution.getFitness()) {
-//            System.out.println("[IMPROVEMENT N5-N6] Moved exam " + exam + " from ts " + examTS + " to ts "
-//                    + newSolution.findExam(exam));
-//        }
-        return newSolution;
+
+        return new Move(solution, new int[] {exam}, new int[] {newTS}, neighborhood);
     }
 
     /**
      * N9
      */
-    private static Solution kempeRandMove(Solution oldSolution) {
-        Solution newSolution = new Solution(oldSolution);
-        newSolution.resetAttributes();
-
-        int nExams = newSolution.getInstance().getExams().length;
-        Random rand = new Random();
+    private static Move kempeRandMove(Solution solution, Random rand) {
+        int nExams = solution.getInstance().getExams().length;
         int ei = rand.nextInt(nExams);
-        int ti = newSolution.findExam(ei);
+        int ti = solution.findExam(ei);
 
-        return kempeChainAlgorithm(newSolution, ei, ti);
+        return kempeChainAlgorithm(solution, ei, ti, 9, rand);
     }
 
     /**
      * N10-N11
      */
-    private static Solution kempeMove(Solution oldSolution, double ratio) {
+    private static Move kempeMove(Solution solution, double ratio, int neighborhood, Random rand) {
 
-        int[] highestPenaltyExam = oldSolution.getHighestPenaltyExam(ratio);
+        int[] highestPenaltyExam = solution.getHighestPenaltyExam(ratio, rand);
         int exam = highestPenaltyExam[0];
         int examTS = highestPenaltyExam[1];
-        Solution newSolution = new Solution(oldSolution);
-        newSolution.resetAttributes();
 
-        return kempeChainAlgorithm(newSolution, exam, examTS);
+        return kempeChainAlgorithm(solution, exam, examTS, neighborhood, rand);
     }
 
-    private static Solution kempeChainAlgorithm(Solution newSolution, int exam, int examTS) {
-        int nTimeslots = newSolution.getTimetable().length;
+    private static Move kempeChainAlgorithm(Solution solution, int exam, int examTS, int neighborhood,
+                                            Random rand) {
+        int nTimeslots = solution.getNTimeslots();
 
         int newTS;
-        Random rand = new Random();
         do {
             newTS = rand.nextInt(nTimeslots);
         } while (newTS == examTS);
 
-        ArrayList<Integer> queue1 = new ArrayList<>();
-        queue1.add(exam);
-        ArrayList<Integer> queue2 = new ArrayList<>();
-        ArrayList<Integer> visited1 = new ArrayList<>();
-        ArrayList<Integer> visited2 = new ArrayList<>();
-
-        while (!queue1.isEmpty()) {
-            while (!queue1.isEmpty()) {
-                int currentExam = queue1.remove(0);
-                visited1.add(currentExam);
-                for (int ej : newSolution.getTimetable()[newTS]) {
-                    if (!visited2.contains(ej) && !queue2.contains(ej) && newSolution.getInstance().getNConflicts(currentExam, ej) > 0) {
-                        queue2.add(ej);
-                    }
-                }
-            }
-
-            while (!queue2.isEmpty()) {
-                int currentExam = queue2.remove(0);
-                visited2.add(currentExam);
-                for (int ei : newSolution.getTimetable()[examTS]) {
-                    if (!visited1.contains(ei) && !queue1.contains(ei) && newSolution.getInstance().getNConflicts(currentExam, ei) > 0) {
-                        queue1.add(ei);
-                    }
-                }
-            }
-        }
-
-//        System.out.println("Kempe-chain " + examTS + " - " + newTS + "\n" +
-//                visited1.toString() + "\n" + visited2.toString());
-
-        // remove kempe-chain exams from both timeslots
-        for (int ei : visited1) {
-            newSolution.popExam(ei, examTS);
-        }
-        for (int ej : visited2) {
-            newSolution.popExam(ej, newTS);
-        }
-
-        // add kempe-chain exams each to its alternative timeslot
-        for (int ei : visited1) {
-            newSolution.placeExam(ei, newTS);
-        }
-        for (int ej : visited2) {
-            newSolution.placeExam(ej, examTS);
-        }
-        return newSolution;
+        return KempeChain.move(solution, exam, examTS, newTS, neighborhood);
     }
 }
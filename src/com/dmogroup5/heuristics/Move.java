@@ -0,0 +1,120 @@
+package com.dmogroup5.heuristics;
+
+import com.dmogroup5.utils.Solution;
+
+/**
+ * A move of a neighborhood structure: a set of exams, each one reassigned to a new time-slot.
+ * Every neighborhood can be expressed in this way (a single exam move, a swap, a Kempe chain, or all the exams
+ * of the time-slots involved in a time-slot swap/rotation).
+ * The move is evaluated on the solution it is generated from, without modifying it. Then it can be applied
+ * in place and undone, so that candidates do not require a copy of the whole solution.
+ */
+public class Move {
+
+    private int[] exams;
+    // destination and original time-slots of each exam (from 0 to nTimeslots-1)
+    private int[] timeslots;
+    private int[] origins;
+    private double delta;
+    private int neighborhood;
+
+    /**
+     * Build and evaluate a move on the current state of the solution
+     *
+     * @param solution      solution on which the move is evaluated (not modified)
+     * @param exams         exams to be moved, without repetitions
+     * @param timeslots     destination time-slot of each exam
+     * @param neighborhood  number of the neighborhood structure which generated the move
+     */
+    public Move(Solution solution, int[] exams, int[] timeslots, int neighborhood) {
+        this.exams = exams;
+        this.timeslots = timeslots;
+        this.neighborhood = neighborhood;
+        this.origins = new int[exams.length];
+        for (int i = 0; i < exams.length; i++) {
+            this.origins[i] = solution.getT()[exams[i]] - 1;
+        }
+        this.delta = exams.length > 0 ? solution.getMoveDelta(exams, timeslots) : 0;
+    }
+
+    /**
+     * Build a move whose objective variation has already been computed by the neighborhood (e.g. Kempe chains)
+     *
+     * @param delta objective variation of the move on the current state of the solution
+     */
+    public Move(Solution solution, int[] exams, int[] timeslots, double delta, int neighborhood) {
+        this.exams = exams;
+        this.timeslots = timeslots;
+        this.neighborhood = neighborhood;
+        this.origins = new int[exams.length];
+        for (int i = 0; i < exams.length; i++) {
+            this.origins[i] = solution.getT()[exams[i]] - 1;
+        }
+        this.delta = delta;
+    }
+
+    /**
+     * Empty move, e.g. when a neighborhood does not find any feasible move
+     */
+    public Move(int neighborhood) {
+        this.exams = new int[0];
+        this.timeslots = new int[0];
+        this.origins = new int[0];
+        this.delta = 0;
+        this.neighborhood = neighborhood;
+    }
+
+    /**
+     * Apply the move to the solution it has been evaluated on
+     */
+    public void apply(Solution solution) {
+        relocate(solution, this.origins, this.timeslots);
+        solution.shiftFitness(this.delta);
+        solution.setNeighborhoodOrigin(this.neighborhood);
+    }
+
+    /**
+     * Restore the solution as it was before apply()
+     */
+    public void undo(Solution solution) {
+        relocate(solution, this.timeslots, this.origins);
+        solution.shiftFitness(-this.delta);
+    }
+
+    /**
+     * All the exams are removed before placing them in the new time-slots, since they may be in conflict with
+     * each other (e.g. Kempe chains)
+     *
+     * @throws IllegalStateException if an exam conflicts with its new time-slot, i.e. the move is not feasible or the
+     *                               solution changed since the move was evaluated
+     */
+    private void relocate(Solution solution, int[] from, int[] to) {
+        for (int i = 0; i < this.exams.length; i++) {
+            solution.popExam(this.exams[i], from[i]);
+        }
+        for (int i = 0; i < this.exams.length; i++) {
+            if (!solution.placeExam(this.exams[i], to[i])) {
+                throw new IllegalStateException("Exam " + this.exams[i] + " conflicts with time-slot " + (to[i] + 1));
+            }
+        }
+    }
+
+    /**
+     * @return objective variation caused by the move
+     */
+    public double getDelta() {
+        return this.delta;
+    }
+
+    public int getNeighborhood() {
+        return this.neighborhood;
+    }
+
+    public int[] getExams() {
+        return this.exams;
+    }
+
+    public int[] getTimeslots() {
+        return this.timeslots;
+    }
+}
@@ -0,0 +1,129 @@
+package com.dmogroup5.heuristics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Adaptive choice of the neighborhood structures explored at each iteration (roulette wheel with adaptive
+ * weights, as in ALNS). The productivity of each neighborhood is its objective improvement per nanosecond (of CPU
+ * time, or wall-clock time when the neighborhoods run concurrently) over its recent runs: improvements and times
+ * are both summed with exponentially decaying weights, so that the productivity follows the phases of the search.
+ * Neighborhoods are drawn with probability proportional to their productivity, but never below MIN_SHARE of the
+ * most productive one, so that expensive neighborhoods which rarely improve the solution are seldom run but still
+ * re-evaluated.
+ * Not thread-safe: each search thread must use its own selector.
+ */
+public class OperatorSelector {
+
+    // decay of the past observations at each run (i.e. the productivity is measured on about 1/REACTION runs)
+    private static final double REACTION = 0.01;
+    // minimum weight, relative to the most productive neighborhood
+    private static final double MIN_SHARE = 0.05;
+    // improvement credited to every run: negligible with respect to actual improvements, it makes the cheapest
+    // neighborhoods the most productive when none of them has improved the solution recently
+    private static final double PRIOR = 1e-12;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LocalSearch.NeighStructures[] operators;
+    // decayed sums of improvements and nanoseconds, their ratio and the number of runs of each neighborhood
+    private final double[] improvements;
+    private final double[] times;
+    private final double[] rates;
+    private final int[] uses;
+
+    public OperatorSelector(LocalSearch.NeighStructures[] operators) {
+        this.operators = operators.clone();
+        this.improvements = new double[operators.length];
+        this.times = new double[operators.length];
+        this.rates = new double[operators.length];
+        this.uses = new int[operators.length];
+    }
+
+    /**
+     * Draw distinct neighborhood structures. Those never run are chosen first, then the roulette wheel is used.
+     *
+     * @param n number of neighborhood structures (at most the number of operators)
+     * @return  indexes of the chosen operators (see getOperator())
+     */
+    public int[] select(int n, Random rand) {
+        int[] selected = new int[n];
+        boolean[] taken = new boolean[this.operators.length];
+        double maxRate = 0;
+        for (double rate : this.rates) {
+            maxRate = Math.max(maxRate, rate);
+        }
+
+        for (int s = 0; s < n; s++) {
+            int choice = -1;
+            double total = 0;
+            double[] weights = new double[this.operators.length];
+            for (int i = 0; i < this.operators.length && choice < 0; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                if (this.uses[i] == 0) {
+                    choice = i;
+                }
+                weights[i] = Math.max(this.rates[i], MIN_SHARE * maxRate);
+                total += weights[i];
+            }
+
+            if (choice < 0) {
+                double pick = rand.nextDouble() * total;
+                for (int i = 0; i < this.operators.length; i++) {
+                    if (!taken[i]) {
+                        choice = i;
+                        pick -= weights[i];
+                        if (pick < 0) {
+                            break;
+                        }
+                    }
+                }
+            }
+            taken[choice] = true;
+            selected[s] = choice;
+        }
+        return selected;
+    }
+
+    /**
+     * Record the outcome of a run of a neighborhood structure
+     *
+     * @param operator      index of the operator
+     * @param nanos         time spent generating the move: CPU time of the thread (see cpuTime()), or wall-clock time
+     *                      if the move is generated concurrently with other ones, whose work may be split among
+     *                      several threads
+     * @param improvement   objective improvement obtained with the move (0 if it was not applied or not improving)
+     */
+    public void update(int operator, long nanos, double improvement) {
+        this.improvements[operator] = (1 - REACTION) * this.improvements[operator] + improvement;
+        this.times[operator] = (1 - REACTION) * this.times[operator] + Math.max(1, nanos);
+        this.rates[operator] = (this.improvements[operator] + PRIOR) / this.times[operator];
+        this.uses[operator]++;
+    }
+
+    public LocalSearch.NeighStructures getOperator(int operator) {
+        return this.operators[operator];
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds (wall-clock time if not supported by the JVM)
+     */
+    public static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * @return the improvement per millisecond and the number of runs of each neighborhood structure
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.operators.length; i++) {
+            sb.append(String.format("%s: %.3g/ms (%d) ", this.operators[i], this.rates[i] * 1e6, this.uses[i]));
+        }
+        return sb.toString().trim();
+    }
+}
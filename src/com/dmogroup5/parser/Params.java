@@ -2,6 +2,11 @@ package com.dmogroup5.parser;
 
 import org.apache.commons.cli.*;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 
 public class Params {
 
@@ -10,6 +15,22 @@ public class Params {
     private Double TLIM = Double.POSITIVE_INFINITY;
     private boolean DEBUG = false;
     private boolean HELP = false;
+    private boolean VERIFY_DELTA = false;
+    private boolean CACHE = false;
+    private boolean CONFLICT_TABLE = true;
+    private int FITNESS_CACHE = 0;
+    private boolean ADAPTIVE = false;
+    private Map<String, String> EXPLORATIONS = new LinkedHashMap<>();
+    // neighborhood structures which can be scanned with the `first` and `best` explorations
+    private static final List<String> SCANNABLE_NBH = Arrays.asList("n2", "n3", "n9", "n10", "n11");
+    private int NBH_THREADS = 1;
+    private int WORKERS = 1;
+    private Long SEED = null;
+    private String ALGORITHM = "ils";
+    private int REPLICAS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int ISLANDS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private String SELECTION = "rank";
+    private String CROSSOVER = "timeslots";
 
     public Options options = new Options();
     private String[] args;
@@ -32,6 +53,91 @@ public class Params {
                 .build();
 
         this.options.addOption(tlim);
+        this.options.addOption(Option.builder("a")
+                .longOpt("algorithm")
+                .hasArg()
+                .argName("name")
+                .desc("Solving algorithm: `ils` (iterated local search with simulated annealing, default), " +
+                        "`pt` (parallel tempering), `tabu` (tabu search) or `ga` (genetic algorithm with the island model)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("replicas")
+                .hasArg()
+                .argName("k")
+                .desc("Number of replicas of parallel tempering, each one on its own thread (default: number of cores, at least 2)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("islands")
+                .hasArg()
+                .argName("k")
+                .desc("Number of populations of the genetic algorithm, each one on its own thread (default: number of cores, at least 2)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("selection")
+                .hasArg()
+                .argName("weighting")
+                .desc("Selection of the parents in the genetic algorithm: `rank` (roulette-wheel with linear ranking," +
+                        " default), `inverted` (roulette-wheel with inverted objective value) or `tournament`")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("crossover")
+                .hasArg()
+                .argName("operator")
+                .desc("Crossover of the genetic algorithm: `timeslots` (whole time-slots inherited from each parent," +
+                        " default), `uniform` (time-slot of each exam from a random parent) or `none`")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("workers")
+                .hasArg()
+                .argName("n")
+                .desc("Run `n` independent solvers in parallel sharing the best solution (default 1)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("seed")
+                .hasArg()
+                .argName("seed")
+                .desc("Seed of the random generators, for reproducible runs")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("nbh-threads")
+                .hasArg()
+                .argName("n")
+                .desc("Evaluate the neighborhood structures concurrently on `n` threads (default 1)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("verify-delta")
+                .desc("Check every objective value obtained by delta evaluation against the full computation (slow)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("explore")
+                .hasArg()
+                .argName("nbh=mode,...")
+                .desc("Exploration of the neighborhood structures: `random` (a single random move, default), `first`" +
+                        " (first improving move) or `best` (best move), e.g. `N3=best,N10=first`. Only N2, N3, N9," +
+                        " N10 and N11 can be scanned")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("adaptive")
+                .desc("Choose the neighborhood structures explored at each iteration according to their improvement" +
+                        " per CPU time, instead of exploring a fixed set")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("no-conflict-table")
+                .desc("Do not keep the exams x time-slots conflict table in the solutions (saves memory on large" +
+                        " instances, at the price of slower feasibility checks and move evaluation)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("fitness-cache")
+                .hasArg()
+                .argName("entries")
+                .desc("Size of the cache of the objective values by solution hash, which avoids evaluating identical" +
+                        " timetables again (e.g. 65536; default 0, i.e. disabled)")
+                .build());
+        this.options.addOption(Option.builder()
+                .longOpt("cache")
+                .desc("Keep a binary snapshot of the parsed instance next to its files (`<instance_name>.cache`)," +
+                        " which is loaded instead of parsing the files again as long as they do not change")
+                .build());
 
         CommandLineParser parser = new DefaultParser();
         CommandLine line = parser.parse( this.options, this.args );
@@ -49,19 +155,132 @@ public class Params {
         } else {
 
             if (line.hasOption("t")) {
-                this.TLIM = Double.parseDouble(line.getOptionValue("t"));
-                if (this.TLIM <= 0) {
-                    throw new ParseException("Time limit value not valid, please insert a positive number (seconds)");
+                String error = "Time limit value not valid, please insert a positive number (seconds)";
+                try {
+                    this.TLIM = Double.parseDouble(line.getOptionValue("t"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException(error);
+                }
+                // NaN is rejected as well
+                if (!(this.TLIM > 0)) {
+                    throw new ParseException(error);
                 }
             }
 
             if (line.hasOption("d")) {
                 this.DEBUG = true;
             }
+
+            if (line.hasOption("a")) {
+                this.ALGORITHM = line.getOptionValue("a").toLowerCase();
+                if (!this.ALGORITHM.matches("ils|pt|tabu|ga")) {
+                    throw new ParseException("Algorithm `" + this.ALGORITHM + "` not available");
+                }
+            }
+
+            if (line.hasOption("replicas")) {
+                this.REPLICAS = parseInt(line, "replicas", 2,
+                        "Number of replicas not valid, please insert an integer greater than 1");
+            }
+
+            if (line.hasOption("islands")) {
+                this.ISLANDS = parseInt(line, "islands", 1,
+                        "Number of islands not valid, please insert a positive integer");
+            }
+
+            if (line.hasOption("selection")) {
+                this.SELECTION = line.getOptionValue("selection").toLowerCase();
+                if (!this.SELECTION.matches("rank|inverted|tournament")) {
+                    throw new ParseException("Selection `" + this.SELECTION + "` not available");
+                }
+            }
+
+            if (line.hasOption("crossover")) {
+                this.CROSSOVER = line.getOptionValue("crossover").toLowerCase();
+                if (!this.CROSSOVER.matches("timeslots|uniform|none")) {
+                    throw new ParseException("Crossover `" + this.CROSSOVER + "` not available");
+                }
+            }
+
+            if (line.hasOption("workers")) {
+                this.WORKERS = parseInt(line, "workers", 1,
+                        "Number of workers not valid, please insert a positive integer");
+            }
+
+            if (line.hasOption("seed")) {
+                // any long is a valid seed, negative ones included
+                try {
+                    this.SEED = Long.parseLong(line.getOptionValue("seed").trim());
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Seed not valid, please insert an integer");
+                }
+            }
+
+            if (line.hasOption("nbh-threads")) {
+                this.NBH_THREADS = parseInt(line, "nbh-threads", 1,
+                        "Number of neighborhood threads not valid, please insert a positive integer");
+            }
+
+            if (line.hasOption("verify-delta")) {
+                this.VERIFY_DELTA = true;
+            }
+
+            if (line.hasOption("explore")) {
+                for (String entry : line.getOptionValue("explore").toLowerCase().split(",")) {
+                    String[] nbhMode = entry.trim().split("=");
+                    if (nbhMode.length != 2 || !nbhMode[1].matches("random|first|best")) {
+                        throw new ParseException("Exploration `" + entry + "` not valid, please use <nbh>=random|first|best");
+                    }
+                    if (!nbhMode[0].matches("n([1-9]|1[01])")) {
+                        throw new ParseException("Neighborhood structure `" + nbhMode[0] + "` not available");
+                    }
+                    if (!nbhMode[1].equals("random") && !SCANNABLE_NBH.contains(nbhMode[0])) {
+                        throw new ParseException("Neighborhood structure `" + nbhMode[0] + "` cannot be scanned");
+                    }
+                    this.EXPLORATIONS.put(nbhMode[0], nbhMode[1]);
+                }
+            }
+
+            if (line.hasOption("adaptive")) {
+                this.ADAPTIVE = true;
+            }
+
+            if (line.hasOption("no-conflict-table")) {
+                this.CONFLICT_TABLE = false;
+            }
+
+            if (line.hasOption("fitness-cache")) {
+                this.FITNESS_CACHE = parseInt(line, "fitness-cache", 0,
+                        "Fitness cache size not valid, please insert a non-negative integer");
+            }
+
+            if (line.hasOption("cache")) {
+                this.CACHE = true;
+            }
         }
 
     }
 
+    /**
+     * Integer value of an option. Malformed values are reported as a ParseException like the other parsing errors,
+     * so that the usage hint is printed
+     *
+     * @param min   minimum accepted value
+     * @param error message of the exception if the value is malformed or lower than min
+     */
+    private static int parseInt(CommandLine line, String option, int min, String error) throws ParseException {
+        int value;
+        try {
+            value = Integer.parseInt(line.getOptionValue(option).trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException(error);
+        }
+        if (value < min) {
+            throw new ParseException(error);
+        }
+        return value;
+    }
+
     public Double getTLIM() {
         return TLIM;
     }
@@ -70,6 +289,62 @@ public class Params {
         return DEBUG;
     }
 
+    public boolean isVERIFY_DELTA() {
+        return VERIFY_DELTA;
+    }
+
+    public Map<String, String> getEXPLORATIONS() {
+        return EXPLORATIONS;
+    }
+
+    public boolean isADAPTIVE() {
+        return ADAPTIVE;
+    }
+
+    public boolean isCONFLICT_TABLE() {
+        return CONFLICT_TABLE;
+    }
+
+    public int getFITNESS_CACHE() {
+        return FITNESS_CACHE;
+    }
+
+    public boolean isCACHE() {
+        return CACHE;
+    }
+
+    public int getNBH_THREADS() {
+        return NBH_THREADS;
+    }
+
+    public String getALGORITHM() {
+        return ALGORITHM;
+    }
+
+    public int getREPLICAS() {
+        return REPLICAS;
+    }
+
+    public int getISLANDS() {
+        return ISLANDS;
+    }
+
+    public String getSELECTION() {
+        return SELECTION;
+    }
+
+    public String getCROSSOVER() {
+        return CROSSOVER;
+    }
+
+    public int getWORKERS() {
+        return WORKERS;
+    }
+
+    public Long getSEED() {
+        return SEED;
+    }
+
     public boolean isHELP() {
         return HELP;
     }
@@ -0,0 +1,62 @@
+package com.dmogroup5.threads;
+
+import com.dmogroup5.utils.Solution;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Global best solution shared by all the solvers running in parallel. Solvers publish their improvements
+ * without locking (compare-and-set on the reference), and this is the only place where the solution file is written.
+ */
+public class BestSolutionHolder {
+
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+    // fitness of the solution in the file, only accessed while holding the lock of writeBest()
+    private double writtenFitness = Double.MAX_VALUE;
+
+    /**
+     * Publish a solution if it is better than the global best. The solution must not be modified afterwards,
+     * since it is shared among threads (solvers should offer their own copy of the best solution).
+     *
+     * @param candidate solution to be published
+     * @return          true if the candidate is the new global best
+     */
+    public boolean offer(Solution candidate) {
+        // fitness is lazily computed, make it available before sharing the solution
+        double fitness = candidate.getFitness();
+        Solution current;
+        do {
+            current = this.best.get();
+            if (current != null && current.getFitness() <= fitness) {
+                return false;
+            }
+        } while (!this.best.compareAndSet(current, candidate));
+
+        this.writeBest();
+        return true;
+    }
+
+    /**
+     * Write the current global best in the solution file, unless it is already there. Concurrent improvements
+     * are coalesced: the thread which gets the lock writes the most recent best.
+     */
+    private synchronized void writeBest() {
+        Solution current = this.best.get();
+        if (current.getFitness() < this.writtenFitness) {
+            try {
+                current.writeSolution();
+                this.writtenFitness = current.getFitness();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the global best solution, null if no solution has been published yet
+     */
+    public Solution getBest() {
+        return this.best.get();
+    }
+}
@@ -1,14 +1,20 @@
 package com.dmogroup5.threads;
 
 import com.dmogroup5.Solver;
-import com.dmogroup5.utils.Instance;
 
 public class SolverThread extends Thread {
 
     private Solver solver;
+    // multiplier of the default starting temperature, to diversify parallel solvers
+    private double tempFactor;
 
     public SolverThread(Solver solver){
+        this(solver, 1);
+    }
+
+    public SolverThread(Solver solver, double tempFactor){
         this.solver = solver;
+        this.tempFactor = tempFactor;
     }
 
     @Override
@@ -17,8 +23,21 @@ public class SolverThread extends Thread {
             // The temperature depends on how much time is dedicated to the solving algorithm
             // From a time in range 180-300 sec, temp will be around 900-1200 (empirically found to
             // be appropriate)
-            double temp = 2.5 * this.solver.getSolvingTime();
-            this.solver.solveILS(temp);
+            double temp = 2.5 * this.solver.getSolvingTime() * this.tempFactor;
+            switch (this.solver.getAlgorithm()) {
+                case PT:
+                    // the temperature of the hottest replica
+                    this.solver.solvePT(temp, this.solver.getNReplicas());
+                    break;
+                case TABU:
+                    this.solver.solveTabu();
+                    break;
+                case GA:
+                    this.solver.solveGA(this.solver.getNIslands());
+                    break;
+                default:
+                    this.solver.solveILS(temp);
+            }
         } catch (InterruptedException e) {
             System.out.println("Solver execution interrupted");
         } catch (Exception e) {
@@ -0,0 +1,334 @@
+package com.dmogroup5.utils;
+
+import java.util.Random;
+
+/**
+ * Incremental construction with the saturation degree ordering (DSatur): the exam with the highest number of
+ * unavailable time-slots is placed first, ties are resolved with random picking.
+ * Saturation degrees are updated only for the neighbors of the exam just placed, from the number of placed
+ * neighbors of each exam in each time-slot, and the exams to be placed are kept in a bucket queue: an array sorted
+ * by saturation degree in which each bucket is a contiguous segment, so that changing a degree by one is a swap.
+ * When an exam cannot be placed, the time-slot is freed with a Kempe chain swap if possible, otherwise the exams
+ * blocking it are removed and queued again.
+ */
+class DSatur {
+
+    private final Solution solution;
+    private final Instance instance;
+    private final Random rand;
+    private final boolean randTimetable;
+    private final int nExams;
+    private final int nTimeslots;
+
+    // placed[e * nTimeslots + t]: number of neighbors of exam e placed in time-slot t
+    private final int[] placed;
+    // saturation degree of the queued exams
+    private final int[] saturation;
+
+    // queue[0 ... size-1] sorted by saturation degree, bucket d is queue[bucketStart[d] ... bucketStart[d+1]-1]
+    private final int[] queue;
+    private final int[] position;
+    private final int[] bucketStart;
+    private int size;
+
+    // visit marks of the Kempe chains, see KempeChain
+    private final int[] stamps;
+    private final int[] chain;
+    private int generation = 0;
+
+    private DSatur(Instance instance, boolean randTimetable, Random rand) {
+        this.solution = new Solution(instance);
+        this.instance = instance;
+        this.rand = rand;
+        this.randTimetable = randTimetable;
+        this.nExams = instance.getExams().length;
+        this.nTimeslots = instance.getnTimeslots();
+
+        this.placed = new int[this.nExams * this.nTimeslots];
+        this.saturation = new int[this.nExams];
+        this.queue = new int[this.nExams];
+        this.position = new int[this.nExams];
+        this.bucketStart = new int[this.nTimeslots + 2];
+        for (int e = 0; e < this.nExams; e++) {
+            this.queue[e] = e;
+            this.position[e] = e;
+        }
+        this.size = this.nExams;
+        for (int d = 1; d < this.bucketStart.length; d++) {
+            this.bucketStart[d] = this.nExams;
+        }
+
+        this.stamps = new int[this.nExams];
+        this.chain = new int[this.nExams];
+    }
+
+    /**
+     * Build a feasible complete solution
+     *
+     * @param randTimetable if true, the time-slots are examined in random order, otherwise in natural order
+     * @return              the solution, null if the exams could not be placed (too many removals)
+     */
+    static Solution build(Instance instance, boolean randTimetable, Random rand) {
+        DSatur dsatur = new DSatur(instance, randTimetable, rand);
+        // the same exam may be removed and placed again: restart from scratch when it happens too often
+        int removalsLeft = dsatur.nExams;
+
+        while (dsatur.size > 0) {
+            int exam = dsatur.pollMax();
+            if (!dsatur.placeFirstAvailable(exam) && !dsatur.kempeRepair(exam)) {
+                removalsLeft -= dsatur.eject(exam);
+                if (removalsLeft < 0) {
+                    return null;
+                }
+            }
+        }
+        return dsatur.solution;
+    }
+
+    /**
+     * Place the exam in the first available time-slot, in random order if required
+     */
+    private boolean placeFirstAvailable(int exam) {
+        int offset = exam * this.nTimeslots;
+        int[] order = this.timeslotsOrder();
+        for (int ts : order) {
+            if (this.placed[offset + ts] == 0) {
+                this.assign(exam, ts);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] timeslotsOrder() {
+        int[] order = new int[this.nTimeslots];
+        for (int i = 0; i < this.nTimeslots; i++) {
+            order[i] = i;
+        }
+        if (this.randTimetable) {
+            for (int i = this.nTimeslots - 1; i > 0; i--) {
+                int r = this.rand.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[r];
+                order[r] = tmp;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Try to free the time-slot with the fewest neighbors of the exam (random among ties) with a Kempe chain swap
+     * between it and another time-slot: the chain of one of the neighbors blocking the time-slot must contain all of
+     * them, and none of the neighbors in the other time-slot (which would be moved into the freed one). At most
+     * nTimeslots-1 chains are built for each exam
+     *
+     * @return true if the exam has been placed
+     */
+    private boolean kempeRepair(int exam) {
+        int ts = this.leastBlockedTimeslot(exam);
+        // every time-slot is blocked by at least one neighbor
+        int blocker = -1;
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (this.solution.getT()[ej] == ts + 1) {
+                blocker = ej;
+                break;
+            }
+        }
+
+        for (int other : this.timeslotsOrder()) {
+            if (other == ts) {
+                continue;
+            }
+            int length = this.buildChain(blocker, ts, other);
+            if (this.chainFrees(exam, ts, other)) {
+                this.swapChain(length, ts, other);
+                this.assign(exam, ts);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return  the time-slot with the fewest neighbors of the exam, random among ties
+     */
+    private int leastBlockedTimeslot(int exam) {
+        int offset = exam * this.nTimeslots;
+        int best = -1;
+        int ties = 0;
+        for (int ts = 0; ts < this.nTimeslots; ts++) {
+            if (best < 0 || this.placed[offset + ts] < this.placed[offset + best]) {
+                best = ts;
+                ties = 1;
+            } else if (this.placed[offset + ts] == this.placed[offset + best] && this.rand.nextInt(++ties) == 0) {
+                best = ts;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Kempe chain of the exam between its time-slot and another one, marked with the current generation
+     *
+     * @return  number of exams of the chain, stored at the beginning of `chain`
+     */
+    private int buildChain(int exam, int ts, int other) {
+        int[] T = this.solution.getT();
+        this.generation++;
+        int head = 0;
+        int tail = 0;
+        this.chain[tail++] = exam;
+        this.stamps[exam] = this.generation;
+        while (head < tail) {
+            int ei = this.chain[head++];
+            int next = T[ei] == ts + 1 ? other + 1 : ts + 1;
+            for (int k = this.instance.getNeighborsStart(ei); k < this.instance.getNeighborsEnd(ei); k++) {
+                int ej = this.instance.getNeighbor(k);
+                if (T[ej] == next && this.stamps[ej] != this.generation) {
+                    this.stamps[ej] = this.generation;
+                    this.chain[tail++] = ej;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * @return true if swapping the current chain leaves time-slot ts without neighbors of the exam
+     */
+    private boolean chainFrees(int exam, int ts, int other) {
+        int[] T = this.solution.getT();
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            boolean inChain = this.stamps[ej] == this.generation;
+            if (T[ej] == ts + 1 && !inChain || T[ej] == other + 1 && inChain) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void swapChain(int length, int ts, int other) {
+        int[] destination = new int[length];
+        for (int c = 0; c < length; c++) {
+            destination[c] = this.solution.getT()[this.chain[c]] == ts + 1 ? other : ts;
+            this.unassign(this.chain[c]);
+        }
+        for (int c = 0; c < length; c++) {
+            this.assign(this.chain[c], destination[c]);
+        }
+    }
+
+    /**
+     * Place the exam in the time-slot with the fewest neighbors (random among ties, so that the same exams are not
+     * removed over and over), which are removed and queued again
+     *
+     * @return number of removed exams
+     */
+    private int eject(int exam) {
+        int best = this.leastBlockedTimeslot(exam);
+
+        int removed = 0;
+        int[] T = this.solution.getT();
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (T[ej] == best + 1) {
+                this.unassign(ej);
+                this.push(ej);
+                removed++;
+            }
+        }
+        this.assign(exam, best);
+        return removed;
+    }
+
+    /**
+     * Place an exam and update the saturation degrees of its queued neighbors
+     */
+    private void assign(int exam, int ts) {
+        this.solution.placeExam(exam, ts);
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (this.placed[ej * this.nTimeslots + ts]++ == 0 && this.position[ej] >= 0) {
+                this.increment(ej);
+            }
+        }
+    }
+
+    /**
+     * Remove an exam from the timetable and update the saturation degrees of its queued neighbors
+     */
+    private void unassign(int exam) {
+        int ts = this.solution.getT()[exam] - 1;
+        this.solution.popExam(exam, ts);
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (--this.placed[ej * this.nTimeslots + ts] == 0 && this.position[ej] >= 0) {
+                this.decrement(ej);
+            }
+        }
+    }
+
+    /**
+     * Remove from the queue a random exam among those with the highest saturation degree
+     */
+    private int pollMax() {
+        int d = this.nTimeslots;
+        while (this.bucketStart[d] == this.size) {
+            d--;
+        }
+        this.swap(this.bucketStart[d] + this.rand.nextInt(this.size - this.bucketStart[d]), this.size - 1);
+        int exam = this.queue[--this.size];
+        this.position[exam] = -1;
+        for (int b = d + 1; b < this.bucketStart.length; b++) {
+            this.bucketStart[b] = this.size;
+        }
+        return exam;
+    }
+
+    /**
+     * Queue an exam again, with the saturation degree given by its placed neighbors
+     */
+    private void push(int exam) {
+        int degree = 0;
+        for (int ts = 0; ts < this.nTimeslots; ts++) {
+            if (this.placed[exam * this.nTimeslots + ts] > 0) {
+                degree++;
+            }
+        }
+
+        // the exam enters the last bucket, then moves down to its own
+        this.queue[this.size] = exam;
+        this.position[exam] = this.size;
+        this.size++;
+        this.bucketStart[this.nTimeslots + 1] = this.size;
+        this.saturation[exam] = this.nTimeslots;
+        while (this.saturation[exam] > degree) {
+            this.decrement(exam);
+        }
+    }
+
+    private void increment(int exam) {
+        int d = this.saturation[exam];
+        this.swap(this.position[exam], this.bucketStart[d + 1] - 1);
+        this.bucketStart[d + 1]--;
+        this.saturation[exam]++;
+    }
+
+    private void decrement(int exam) {
+        int d = this.saturation[exam];
+        this.swap(this.position[exam], this.bucketStart[d]);
+        this.bucketStart[d]++;
+        this.saturation[exam]--;
+    }
+
+    private void swap(int i, int j) {
+        int ei = this.queue[i];
+        int ej = this.queue[j];
+        this.queue[i] = ej;
+        this.queue[j] = ei;
+        this.position[ej] = i;
+        this.position[ei] = j;
+    }
+}
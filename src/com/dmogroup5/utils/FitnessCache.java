@@ -0,0 +1,58 @@
+package com.dmogroup5.utils;
+
+/**
+ * Bounded cache of objective values keyed by the Zobrist hash of the solutions (see Solution.getHash()), so that
+ * identical timetables are evaluated only once. It is a direct-mapped table: a new value overwrites the one with the
+ * same index. It is shared by all the threads without locking: each entry stores the hash xor the value next to the
+ * value, so an entry written concurrently by two threads fails the check on the hash and is read as a miss.
+ * Values are valid for a single instance, so each instance has its own cache (see Instance.setFitnessCache()).
+ */
+public class FitnessCache {
+
+    // entries[2i] = hash ^ bits of the value, entries[2i+1] = bits of the value (0 if the entry is empty)
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * @param capacity  maximum number of values, rounded up to a power of 2
+     */
+    public FitnessCache(int capacity) {
+        int size = capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : 1;
+        this.entries = new long[2 * size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return  the value stored for the hash, NaN if it is not in the cache
+     */
+    public double get(long hash) {
+        int i = this.index(hash);
+        long value = this.entries[i + 1];
+        if (value == 0 || (this.entries[i] ^ value) != hash) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(value);
+    }
+
+    /**
+     * Store a value, replacing the one with the same index (a zero value, i.e. an optimal solution, is not stored)
+     */
+    public void put(long hash, double fitness) {
+        int i = this.index(hash);
+        long value = Double.doubleToRawLongBits(fitness);
+        if (value == 0) {
+            return;
+        }
+        this.entries[i] = hash ^ value;
+        this.entries[i + 1] = value;
+    }
+
+    private int index(long hash) {
+        // the low bits of the hash are already uniformly distributed
+        return ((int) hash & this.mask) << 1;
+    }
+
+    public int capacity() {
+        return this.mask + 1;
+    }
+}
@@ -1,12 +1,21 @@
 package com.dmogroup5.utils;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class Instance {
 
+    public static final String SNAPSHOT_EXTENSION = ".cache";
+    private static final int SNAPSHOT_MAGIC = 0x45545043;
+    private static final int SNAPSHOT_VERSION = 2;
+
     private String instanceName;
     private String directory;
 
@@ -15,9 +24,22 @@ public class Instance {
     private int nTimeslots;
     private int enrolments;
 
-    // Conflicts matrix: N[i][j] = # of conflicts between exam in position i and exam in position j
-    // shape: (nExams, nExams)
-    private int[][] N;
+    // Conflict graph in compressed sparse row format: the exams in conflict with exam i are
+    // adjExams[adjStart[i]] ... adjExams[adjStart[i+1]-1] (sorted by index) and adjConflicts holds, in the same
+    // positions, the number of students enrolled in both exams. Only the exams actually in conflict are stored.
+    private int[] adjStart;
+    private int[] adjExams;
+    private int[] adjConflicts;
+
+    // The same graph as a bitset row for each exam (bit j of row i is set if i and j are in conflict, with the same
+    // layout of the time-slot rows of Solution), so that checking an exam against a whole time-slot is a word-wise
+    // AND. Only built if it takes at most CONFLICT_BITS_MAX_BYTES, null otherwise.
+    private static final long CONFLICT_BITS_MAX_BYTES = 64L << 20;
+    private long[] conflictBits;
+    private int words;
+
+    // Objective values of the solutions of this instance already evaluated, by hash (null if disabled)
+    private FitnessCache fitnessCache = null;
 
     /**
      * Class with reading/writing (I/O) utility functions
@@ -56,13 +78,42 @@ public class Instance {
      * @return the Instance object with all parameters set up if no errors are found in reading the files
      */
     public static Instance readInstance(String instanceName, String directory) throws IOException {
+        return readInstance(instanceName, directory, false);
+    }
+
+    /**
+     * Read the instance as readInstance(instanceName, directory), optionally through a binary snapshot of the
+     * parsed data, stored next to the instance files as `instanceName.cache`. The snapshot is keyed by the size
+     * and the modification time of the 3 files: it is used only if they have not changed since it was written,
+     * otherwise the files are parsed and the snapshot is replaced.
+     *
+     * @param useCache  read and write the binary snapshot
+     * @return the Instance object with all parameters set up if no errors are found in reading the files
+     */
+    public static Instance readInstance(String instanceName, String directory, boolean useCache) throws IOException {
         Instance instance = new Instance(instanceName, directory);
         try {
+            byte[] key = null;
+            Path snapshot = Paths.get(instance.directory + instanceName + SNAPSHOT_EXTENSION);
+            if (useCache) {
+                key = instance.sourceFilesKey();
+                if (instance.readSnapshot(snapshot, key)) {
+                    instance.buildConflictBits();
+                    return instance;
+                }
+            }
+
             instance.readExams();
             instance.readStudents();
             instance.readNTimeslots();
-        } catch (IOException e) {
-            throw new IOException("File " + e.getMessage() + " not found");
+
+            if (useCache) {
+                instance.writeSnapshot(snapshot, key);
+            }
+            instance.buildConflictBits();
+        } catch (NoSuchFileException e) {
+            // other errors (e.g. a malformed file) already name the file in their message
+            throw new IOException("File " + e.getFile() + " not found", e);
         }
 
         return instance;
@@ -71,89 +122,322 @@ public class Instance {
     /**
      * Store the exams IDs in the `exams` array. Note: exams IDs must be integer but do not need to be
      * from 1 to nExams. This is for a more general input reading.
-     * It also stores the number of subscriptions for each exams. These values are only used in the
-     * `validate()` method.
+     * The number of subscriptions of each exam (second column) is skipped, since it is implied by the `.stu` file.
      */
     private void readExams() throws IOException {
-        List<Integer> examsList = new ArrayList<>();
-        List<Integer> subscriptionsList = new ArrayList<>();
+        IntTokenizer tokenizer = new IntTokenizer(Paths.get(this.directory + this.instanceName + ".exm"));
 
-        File instanceFile = new File( this.directory + this.instanceName + ".exm");
-
-        for (String line : Files.readAllLines(instanceFile.toPath())) {
-            if (!line.equals("")) {
-                String[] lineString = line.trim().split(" ");
-                examsList.add(Integer.parseInt(lineString[0]));
-                subscriptionsList.add(Integer.parseInt(lineString[1]));
+        int[] examsList = new int[256];
+        int nExams = 0;
+        while (tokenizer.hasNextInt()) {
+            if (nExams == examsList.length) {
+                examsList = Arrays.copyOf(examsList, nExams * 2);
             }
+            examsList[nExams++] = tokenizer.nextInt();
+            tokenizer.nextInt();
         }
 
-        int nExams = examsList.size();
-        this.exams = new int[nExams];
-
-        for (int i = 0; i < nExams; i++) {
-            this.exams[i] = examsList.get(i);
-        }
-
+        this.exams = Arrays.copyOf(examsList, nExams);
         Arrays.sort(this.exams);
     }
 
     /**
-     * Creates matrix of shape (nStudents, nExams). Element i,j is true if student i subscribed to exam j
-     * otherwise is false.
+     * Read the enrolments and build the conflict graph.
      *
      * NOTE: this implementation is NOT under the assumptions that every input element is of incremental
-     * value (even if the test instances seem to be like that). For this reason the algorithm has to search
-     * through the array `exams` for matching with IDs.
+     * value (even if the test instances seem to be like that). Exam IDs are mapped to their position in `exams`
+     * with an ExamIndex, and enrolments are grouped by student by sorting them, unless the file already lists
+     * them in order (as the test instances do).
      */
-    // New implementation
     private void readStudents() throws IOException {
+        IntTokenizer tokenizer = new IntTokenizer(Paths.get(this.directory + this.instanceName + ".stu"));
+        ExamIndex examIndex = new ExamIndex(this.exams);
+        int nExams = this.exams.length;
 
-        File instanceFile = new File(this.directory + this.instanceName + ".stu");
+        // Each enrolment is stored as a single key (sID << 32 | exam index)
+        long[] keys = new long[1024];
+        int nKeys = 0;
+        boolean sorted = true;
+
+        while (tokenizer.hasNextInt()) {
+            int sID = tokenizer.nextInt();
+            int eID = tokenizer.nextInt();
+            this.enrolments++;
+
+            int exam = examIndex.get(eID);
+            if (exam < 0) {
+                System.err.println("WARNING: student " + sID + " is enrolled in exam " + eID +
+                        ", which is not in the exams file");
+                continue;
+            }
+            if (nKeys == keys.length) {
+                keys = Arrays.copyOf(keys, nKeys * 2);
+            }
+            keys[nKeys] = ((long) sID << 32) | exam;
+            if (nKeys > 0 && keys[nKeys] < keys[nKeys - 1]) {
+                sorted = false;
+            }
+            nKeys++;
+        }
+        if (!sorted) {
+            Arrays.sort(keys, 0, nKeys);
+        }
 
-        Map<Integer, ArrayList<Integer>> studentSubscriptions = new HashMap<>();
+        // Exams of each student: studentExams[studentStart[s]] ... studentExams[studentStart[s+1]-1]
+        // (repeated enrolments are counted once)
+        int[] studentStart = new int[nKeys + 1];
+        int[] studentExams = new int[nKeys];
+        int nStudents = 0;
+        int size = 0;
+        for (int k = 0; k < nKeys; k++) {
+            if (k > 0 && keys[k] == keys[k - 1]) {
+                continue;
+            }
+            if (k == 0 || (keys[k] >>> 32) != (keys[k - 1] >>> 32)) {
+                studentStart[nStudents++] = size;
+            }
+            studentExams[size++] = (int) keys[k];
+        }
+        studentStart[nStudents] = size;
+        this.nStudents = nStudents;
 
-        for (String line : Files.readAllLines(instanceFile.toPath())) {
-            if (!line.equals("")) {
-                String[] lineValues = line.trim().split(" ");
-                int sID = Integer.parseInt(lineValues[0].substring(1));
-                int eID = Integer.parseInt(lineValues[1]);
-                if (studentSubscriptions.containsKey(sID)) {
-                    studentSubscriptions.get(sID).add(eID);
-                }
-                else {
-                    studentSubscriptions.put(sID, new ArrayList<>());
-                    studentSubscriptions.get(sID).add(eID);
-                }
-                this.enrolments++;
+        // Students of each exam, in the same format
+        int[] examStart = new int[nExams + 1];
+        for (int k = 0; k < size; k++) {
+            examStart[studentExams[k] + 1]++;
+        }
+        for (int i = 0; i < nExams; i++) {
+            examStart[i + 1] += examStart[i];
+        }
+        int[] examStudents = new int[size];
+        int[] next = Arrays.copyOf(examStart, nExams);
+        for (int s = 0; s < nStudents; s++) {
+            for (int k = studentStart[s]; k < studentStart[s + 1]; k++) {
+                examStudents[next[studentExams[k]]++] = s;
             }
         }
 
-        this.nStudents = studentSubscriptions.size();
+        buildConflictGraph(studentStart, studentExams, examStart, examStudents);
+    }
 
-        // N matrix generation
+    /**
+     * Build the sparse conflict graph one exam at a time: the conflicts of exam i are counted over the exams of
+     * its students, with a dense counter array which is cleared after each row.
+     */
+    private void buildConflictGraph(int[] studentStart, int[] studentExams, int[] examStart, int[] examStudents) {
         int nExams = this.exams.length;
-        this.N = new int[nExams][nExams];
-
-        for (ArrayList<Integer> subscriptions : studentSubscriptions.values()) {
-            for (int i = 0; i < subscriptions.size() - 1; i++) {
-                for (int j = i + 1; j < subscriptions.size(); j++) {
-                    int ei = Arrays.binarySearch(this.exams, subscriptions.get(i));
-                    int ej = Arrays.binarySearch(this.exams, subscriptions.get(j));
-                    if (ei < ej) {
-                        this.N[ei][ej] += 1;
-                    } else {
-                        this.N[ej][ei] += 1;
+        int[] counts = new int[nExams];
+        int[] row = new int[nExams];
+
+        this.adjStart = new int[nExams + 1];
+        this.adjExams = new int[Math.max(16, studentExams.length)];
+        this.adjConflicts = new int[this.adjExams.length];
+        int nEdges = 0;
+
+        for (int i = 0; i < nExams; i++) {
+            int degree = 0;
+            for (int k = examStart[i]; k < examStart[i + 1]; k++) {
+                int s = examStudents[k];
+                for (int h = studentStart[s]; h < studentStart[s + 1]; h++) {
+                    int j = studentExams[h];
+                    if (j != i && counts[j]++ == 0) {
+                        row[degree++] = j;
                     }
                 }
             }
+            Arrays.sort(row, 0, degree);
+
+            if (nEdges + degree > this.adjExams.length) {
+                int capacity = Math.max(nEdges + degree, this.adjExams.length * 2);
+                this.adjExams = Arrays.copyOf(this.adjExams, capacity);
+                this.adjConflicts = Arrays.copyOf(this.adjConflicts, capacity);
+            }
+            for (int d = 0; d < degree; d++) {
+                int j = row[d];
+                this.adjExams[nEdges] = j;
+                this.adjConflicts[nEdges] = counts[j];
+                counts[j] = 0;
+                nEdges++;
+            }
+            this.adjStart[i + 1] = nEdges;
         }
 
+        this.adjExams = Arrays.copyOf(this.adjExams, nEdges);
+        this.adjConflicts = Arrays.copyOf(this.adjConflicts, nEdges);
     }
 
     private void readNTimeslots() throws IOException {
-        File instanceFile = new File(this.directory + this.instanceName + ".slo");
-        this.nTimeslots = Integer.parseInt(Files.readAllLines(instanceFile.toPath()).get(0).trim());
+        IntTokenizer tokenizer = new IntTokenizer(Paths.get(this.directory + this.instanceName + ".slo"));
+        this.nTimeslots = tokenizer.nextInt();
+    }
+
+    /**
+     * Build the conflict bitset rows from the sparse conflict graph, unless they would take too much memory
+     */
+    private void buildConflictBits() {
+        int nExams = this.exams.length;
+        this.words = (nExams + 63) >>> 6;
+        if ((long) nExams * this.words * Long.BYTES > CONFLICT_BITS_MAX_BYTES) {
+            return;
+        }
+
+        this.conflictBits = new long[nExams * this.words];
+        for (int i = 0; i < nExams; i++) {
+            for (int k = this.adjStart[i]; k < this.adjStart[i + 1]; k++) {
+                int j = this.adjExams[k];
+                this.conflictBits[i * this.words + (j >>> 6)] |= 1L << j;
+            }
+        }
+    }
+
+    /**
+     * Only the file attributes are read, so that checking the snapshot does not cost a pass over the files
+     *
+     * @return size and modification time (ns) of the `.exm`, `.stu` and `.slo` files
+     */
+    private byte[] sourceFilesKey() throws IOException {
+        ByteBuffer key = ByteBuffer.allocate(6 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (String extension : new String[]{".exm", ".stu", ".slo"}) {
+            Path path = Paths.get(this.directory + this.instanceName + extension);
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            key.putLong(attributes.size()).putLong(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        }
+        return key.array();
+    }
+
+    /**
+     * Load the parsed instance from a binary snapshot written by writeSnapshot().
+     * Layout (little endian ints): magic, version, key (48 bytes), nStudents, enrolments, nTimeslots, nExams, nEdges,
+     * then the arrays exams, adjStart, adjExams and adjConflicts.
+     *
+     * @param key   see sourceFilesKey(), the snapshot is discarded if it was written for different files
+     * @return      false if the snapshot does not exist or is not valid for the current source files
+     */
+    private boolean readSnapshot(Path snapshot, byte[] key) {
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                return false;
+            }
+            byte[] snapshotKey = new byte[key.length];
+            buffer.get(snapshotKey);
+            if (!Arrays.equals(snapshotKey, key)) {
+                return false;
+            }
+            this.nStudents = buffer.getInt();
+            this.enrolments = buffer.getInt();
+            this.nTimeslots = buffer.getInt();
+            int nExams = buffer.getInt();
+            int nEdges = buffer.getInt();
+
+            IntBuffer ints = buffer.asIntBuffer();
+            this.exams = new int[nExams];
+            this.adjStart = new int[nExams + 1];
+            this.adjExams = new int[nEdges];
+            this.adjConflicts = new int[nEdges];
+            ints.get(this.exams).get(this.adjStart).get(this.adjExams).get(this.adjConflicts);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARNING: instance snapshot " + snapshot + " is not readable, the instance files " +
+                    "will be parsed again");
+            return false;
+        }
+    }
+
+    /**
+     * Write the binary snapshot of the parsed instance (see readSnapshot() for the layout). The snapshot is written
+     * to a temporary file which then replaces the old one, so that a concurrent reader never finds it half written.
+     * A failure is not fatal, the instance will be just parsed again the next time.
+     */
+    private void writeSnapshot(Path snapshot, byte[] key) {
+        int nExams = this.exams.length;
+        int nEdges = this.adjExams.length;
+        ByteBuffer buffer = ByteBuffer.allocate(7 * Integer.BYTES + key.length
+                + Integer.BYTES * (2 * nExams + 1 + 2 * nEdges)).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).put(key);
+        buffer.putInt(this.nStudents).putInt(this.enrolments).putInt(this.nTimeslots).putInt(nExams).putInt(nEdges);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(this.exams).put(this.adjStart).put(this.adjExams).put(this.adjConflicts);
+        buffer.rewind();
+
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("WARNING: instance snapshot " + snapshot + " cannot be written (" + e + ")");
+        }
+    }
+
+    /**
+     * Position of each exam ID in the sorted `exams` array: a direct lookup table when the IDs are dense enough
+     * (as in the test instances, from 1 to nExams), an open addressing hash table otherwise.
+     */
+    private static class ExamIndex {
+
+        private final int minID;
+        private int[] table;
+        private int[] keys;
+        private int mask;
+
+        private ExamIndex(int[] exams) {
+            int n = exams.length;
+            this.minID = n > 0 ? exams[0] : 0;
+            long range = n > 0 ? (long) exams[n - 1] - this.minID + 1 : 0;
+
+            if (range <= 4L * n + 1024) {
+                this.table = new int[(int) range];
+                Arrays.fill(this.table, -1);
+                for (int i = 0; i < n; i++) {
+                    this.table[exams[i] - this.minID] = i;
+                }
+            } else {
+                int capacity = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+                this.mask = capacity - 1;
+                this.keys = new int[capacity];
+                this.table = new int[capacity];
+                Arrays.fill(this.table, -1);
+                for (int i = 0; i < n; i++) {
+                    int h = slot(exams[i]);
+                    this.keys[h] = exams[i];
+                    this.table[h] = i;
+                }
+            }
+        }
+
+        /**
+         * @return the index of the exam ID, -1 if the ID is unknown
+         */
+        private int get(int id) {
+            if (this.keys == null) {
+                int k = id - this.minID;
+                return k >= 0 && k < this.table.length ? this.table[k] : -1;
+            }
+            return this.table[slot(id)];
+        }
+
+        /**
+         * @return the position of the ID in the hash table, or of the empty entry where it would be inserted
+         */
+        private int slot(int id) {
+            int h = (id * 0x9E3779B9) & this.mask;
+            while (this.table[h] >= 0 && this.keys[h] != id) {
+                h = (h + 1) & this.mask;
+            }
+            return h;
+        }
     }
 
     public String getInstanceName() {
@@ -169,7 +453,21 @@ public class Instance {
     }
 
     /**
-     * Method to manage the reading of an upper triangular matrix.
+     * Set the cache of the objective values computed by Solution.getFitness(), shared by all the solutions of this
+     * instance (null to disable it, the default). It must be set before the solutions are shared among threads
+     */
+    public void setFitnessCache(FitnessCache cache) {
+        this.fitnessCache = cache;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    /**
+     * Look up the number of conflicts between two exams in the sparse conflict graph (binary search among
+     * the neighbors of i). Hot loops should rather iterate over the neighbors of an exam with
+     * getNeighborsStart(), getNeighborsEnd(), getNeighbor() and getNeighborConflicts().
      *
      * @param i first exam index
      * @param j second exam index
@@ -177,11 +475,10 @@ public class Instance {
      * @throws Exception    if i equals j, the algorithm is probably wrong. An exam should not be compared with itself
      */
     public int getNConflicts(int i, int j) {
-        if (i > j)
-            return this.N[j][i];
-        else if (i < j)
-            return this.N[i][j];
-        else {
+        if (i != j) {
+            int k = Arrays.binarySearch(this.adjExams, this.adjStart[i], this.adjStart[i + 1], j);
+            return k >= 0 ? this.adjConflicts[k] : 0;
+        } else {
             System.err.println("WARNING: an exam has been compared to itself, " +
                     "it might have been put twice in the timetable");
             return Integer.MAX_VALUE;
@@ -189,6 +486,68 @@ public class Instance {
 //            throw new Exception("Exam " + i + " has been compared with itself!");
     }
 
+    /**
+     * @return position of the first neighbor of the exam in the conflict graph arrays
+     */
+    public int getNeighborsStart(int exam) {
+        return this.adjStart[exam];
+    }
+
+    /**
+     * @return position after the last neighbor of the exam in the conflict graph arrays
+     */
+    public int getNeighborsEnd(int exam) {
+        return this.adjStart[exam + 1];
+    }
+
+    /**
+     * @param k position in the conflict graph arrays, between getNeighborsStart(i) and getNeighborsEnd(i)
+     * @return  index of the k-th exam in conflict
+     */
+    public int getNeighbor(int k) {
+        return this.adjExams[k];
+    }
+
+    /**
+     * @param k position in the conflict graph arrays, between getNeighborsStart(i) and getNeighborsEnd(i)
+     * @return  number of students enrolled both in exam i and in the k-th exam in conflict
+     */
+    public int getNeighborConflicts(int k) {
+        return this.adjConflicts[k];
+    }
+
+    /**
+     * @return true if checking the exam against a time-slot is cheaper with the conflict bitsets (see
+     *         conflictsWithBitset()) than by scanning its neighbors, i.e. the exam has more neighbors than the
+     *         number of words of a row
+     */
+    public boolean preferConflictBits(int exam) {
+        return this.conflictBits != null && this.adjStart[exam + 1] - this.adjStart[exam] > this.words;
+    }
+
+    /**
+     * Word-wise AND between the conflict row of the exam and a bitset of exams, e.g. a time-slot row of a Solution.
+     * Must be called only if the conflict bitsets are available (see preferConflictBits()).
+     *
+     * @param bitset    array holding a row of (nExams + 63) / 64 words
+     * @param offset    position of the first word of the row
+     * @param ignored   exam not to be considered (e.g. the one to be swapped), -1 if none
+     * @return          true if any exam of the row, except `ignored`, is in conflict with the given exam
+     */
+    public boolean conflictsWithBitset(int exam, long[] bitset, int offset, int ignored) {
+        int base = exam * this.words;
+        for (int w = 0; w < this.words; w++) {
+            long common = this.conflictBits[base + w] & bitset[offset + w];
+            if (w == ignored >>> 6) {
+                common &= ~(1L << ignored);
+            }
+            if (common != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int getnStudents() {
         return nStudents;
     }
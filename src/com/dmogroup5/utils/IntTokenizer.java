@@ -0,0 +1,70 @@
+package com.dmogroup5.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader of the non-negative integers in a memory-mapped instance file. Bytes are decoded directly,
+ * without building lines or Strings, and every other character is a separator: the student ID `s12` is read as 12,
+ * the exam ID `0034` as 34.
+ */
+class IntTokenizer {
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private int position;
+
+    IntTokenizer(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.size = this.buffer.limit();
+        this.position = 0;
+    }
+
+    /**
+     * Skip the separators before the next integer
+     *
+     * @return false if the end of the file has been reached
+     */
+    boolean hasNextInt() {
+        while (this.position < this.size) {
+            byte b = this.buffer.get(this.position);
+            if (b >= '0' && b <= '9') {
+                return true;
+            }
+            this.position++;
+        }
+        return false;
+    }
+
+    /**
+     * @return the next integer in the file
+     * @throws IOException  if there are no more integers or the value does not fit an int, the message starts with
+     *                      the path of the file
+     */
+    int nextInt() throws IOException {
+        if (!hasNextInt()) {
+            throw new IOException("File " + this.path + ": unexpected end of file");
+        }
+        long value = 0;
+        while (this.position < this.size) {
+            byte b = this.buffer.get(this.position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("File " + this.path + ": integer out of range at byte " + this.position);
+            }
+            this.position++;
+        }
+        return (int) value;
+    }
+}
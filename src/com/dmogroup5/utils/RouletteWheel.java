@@ -0,0 +1,54 @@
+package com.dmogroup5.utils;
+
+import java.util.Random;
+
+/**
+ * Random picking of indices with probability proportional to their weights. The cumulative weights are computed
+ * once, then each draw is a binary search on them: O(n) to build the wheel, O(log n) for every draw.
+ */
+public class RouletteWheel {
+
+    // cumulative[i]: sum of the weights from 0 to i
+    private final double[] cumulative;
+
+    /**
+     * @param weights   non-negative weights, at least one of them must be positive
+     */
+    public RouletteWheel(double[] weights) {
+        this.cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0 || Double.isNaN(weights[i])) {
+                throw new IllegalArgumentException("Weight not valid at index " + i + ": " + weights[i]);
+            }
+            sum += weights[i];
+            this.cumulative[i] = sum;
+        }
+        if (!(sum > 0) || Double.isInfinite(sum)) {
+            throw new IllegalArgumentException("Sum of the weights not valid: " + sum);
+        }
+    }
+
+    /**
+     * @return  index from 0 to n-1, picked with probability weights[i] / sum of the weights
+     */
+    public int next(Random rand) {
+        double point = rand.nextDouble() * this.cumulative[this.cumulative.length - 1];
+        // first index whose cumulative weight is greater than the point (indices with zero weight are never picked)
+        int low = 0;
+        int high = this.cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.cumulative[mid] > point) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return this.cumulative.length;
+    }
+}
@@ -1,7 +1,9 @@
 package com.dmogroup5.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Random;
 
 public class Selection {
     public static int[] pickRandPortion(int[] total, double ratio) {
@@ -20,4 +22,58 @@ public class Selection {
         }
         return res;
     }
+
+    /**
+     * Pick a random portion of the integers from 0 to n-1 without repetitions (Floyd's sampling algorithm).
+     * Unlike pickRandPortion(int[], double) the cost depends only on the number of picked values.
+     *
+     * @param n     size of the range
+     * @param ratio percentage of the values to be picked
+     * @param rand  generator of the random picks
+     * @return      ceil(n * ratio) distinct values in random order
+     */
+    public static int[] pickRandPortion(int n, double ratio, Random rand) {
+        int k = (int) Math.ceil(n * ratio);
+        int[] res = new int[k];
+
+        // open addressing hash set of the values already picked
+        int capacity = Integer.highestOneBit(Math.max(1, k)) << 2;
+        int[] picked = new int[capacity];
+        Arrays.fill(picked, -1);
+
+        int c = 0;
+        for (int j = n - k; j < n; j++) {
+            int t = rand.nextInt(j + 1);
+            if (!addPicked(picked, t)) {
+                t = j;
+                addPicked(picked, t);
+            }
+            res[c++] = t;
+        }
+
+        // values are added in increasing order of their upper bound, shuffle them
+        for (int i = k - 1; i > 0; i--) {
+            int r = rand.nextInt(i + 1);
+            int tmp = res[i];
+            res[i] = res[r];
+            res[r] = tmp;
+        }
+        return res;
+    }
+
+    /**
+     * @return false if the value was already in the set
+     */
+    private static boolean addPicked(int[] picked, int value) {
+        int mask = picked.length - 1;
+        int h = value & mask;
+        while (picked[h] != -1) {
+            if (picked[h] == value) {
+                return false;
+            }
+            h = (h + 1) & mask;
+        }
+        picked[h] = value;
+        return true;
+    }
 }
@@ -3,36 +3,60 @@ package com.dmogroup5.utils;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Class for a solution: the timetable variable contains every exam assigned for each time-slot (list of list),
- * (actually `array of lists` since the number of time-slots is first defined and does not change)
+ * Class for a solution: the T array contains the time-slot assigned to each exam, while the exams assigned to each
+ * time-slot are stored as bitsets (one row of `words` longs for each time-slot) so that moving an exam and
+ * checking where it is are constant time operations and copies are plain array copies.
  * This class also provide useful methods for solution creation, manipulation and feasibility check.
  */
 public class Solution {
 
-    // Note: timetable arrays contain the positions of the exams in the array `exams`, NOT the exams ID
+    // Note: exams are identified by their positions in the array `exams`, NOT by the exams ID
     // This is done to avoid search in the `exams` array. Search is done only in input reading and solution writing
-    private ArrayList<Integer>[] timetable;
-    // T array stores the solution in a different encoding: for each exam, its timeslot
+    // T array stores the solution: for each exam, its timeslot (from 1 to nTimeslots, 0 if not assigned)
     private int[] T;
+    // Bit e of row t (i.e. bit e % 64 of timetable[t * words + e / 64]) is set if exam e is in time-slot t
+    private long[] timetable;
+    private int[] timeslotSizes;
+    private int words;
+    // Penalty of each exam (weighted conflicts with the exams within 5 time-slots), updated at every placement
+    // and removal. The objective function is half of the sum of these values divided by the number of students
+    private long[] penalties;
+    // Optional table of nExams x nTimeslots entries: slotConflicts[e * nTimeslots + t] is the number of students
+    // enrolled both in exam e and in an exam placed in time-slot t. It makes feasibility checks and the cost of
+    // moving a single exam constant time lookups; null if disabled or too large
+    private int[] slotConflicts;
+    // Zobrist hash of the timetable: xor of the keys of the (exam, time-slot) pairs of the placed exams, see
+    // zobristKey(). Updated at every placement and removal, equal solutions have the same hash
+    private long hash;
     private Instance instance;
     private double fitness;
     private int neighborhoodOrigin = 0;
 
+    // If true, every objective value obtained by delta evaluation is checked against the full computation
+    private static boolean verifyDelta = false;
+    private static final ThreadLocal<MoveScratch> MOVE_SCRATCH = ThreadLocal.withInitial(MoveScratch::new);
+    // If true, the slotConflicts table is kept by the solutions with at most CONFLICT_TABLE_MAX_ENTRIES entries
+    private static boolean conflictTable = true;
+    private static final long CONFLICT_TABLE_MAX_ENTRIES = 1L << 22;
+
     /**
      * Generates an empty solution
      *
      * @param instance The instance which can provide the number of time-slots and many useful data
      */
-    private Solution(Instance instance) {
+    Solution(Instance instance) {
         this.fitness = Double.MAX_VALUE;
-        this.T = null;
+        this.T = new int[instance.getExams().length];
+        this.penalties = new long[instance.getExams().length];
         this.instance = instance;
-        this.timetable = new ArrayList[instance.getnTimeslots()];
-        for (int i = 0; i < instance.getnTimeslots(); i++) {
-            this.timetable[i] = new ArrayList<>();
+        this.words = (instance.getExams().length + 63) >>> 6;
+        this.timetable = new long[instance.getnTimeslots() * this.words];
+        this.timeslotSizes = new int[instance.getnTimeslots()];
+        if (keepsConflictTable(instance)) {
+            this.slotConflicts = new int[instance.getExams().length * instance.getnTimeslots()];
         }
         this.neighborhoodOrigin = 0;
     }
@@ -43,22 +67,61 @@ public class Solution {
      * @param original solution to be cloned
      */
     public Solution(Solution original) {
+        this(original, true);
+    }
+
+    /**
+     * Copy constructor. The conflict table is the largest array of a solution (nExams x nTimeslots ints), so copies
+     * which are only read, e.g. the best solutions kept aside, can leave it out: they answer the same queries by
+     * visiting the neighbors. A copy with the table of a solution without it rebuilds the table from T.
+     *
+     * @param original  solution to be cloned
+     * @param keepTable false if the copy does not need the conflict table
+     */
+    public Solution(Solution original, boolean keepTable) {
         this.fitness = original.fitness;
-        this.T = original.T;
+        this.T = original.T.clone();
+        this.penalties = original.penalties.clone();
         this.instance = original.getInstance();
-        this.timetable = new ArrayList[this.instance.getnTimeslots()];
-        for (int i = 0; i < this.instance.getnTimeslots(); i++) {
-            this.timetable[i] = new ArrayList<>();
-            for (int exam: original.timetable[i]) {
-                this.timetable[i].add(exam);
+        this.words = original.words;
+        this.timetable = original.timetable.clone();
+        this.timeslotSizes = original.timeslotSizes.clone();
+        if (keepTable && original.slotConflicts != null) {
+            this.slotConflicts = original.slotConflicts.clone();
+        } else if (keepTable && keepsConflictTable(this.instance)) {
+            this.buildConflictTable();
+        }
+        this.hash = original.hash;
+    }
+
+    /**
+     * @return true if the solutions of the instance created now have the conflict table
+     */
+    private static boolean keepsConflictTable(Instance instance) {
+        long entries = (long) instance.getExams().length * instance.getnTimeslots();
+        return conflictTable && entries <= CONFLICT_TABLE_MAX_ENTRIES;
+    }
+
+    /**
+     * Build the conflict table from T, visiting the neighbors of every placed exam
+     */
+    private void buildConflictTable() {
+        int nTimeslots = this.timeslotSizes.length;
+        this.slotConflicts = new int[this.T.length * nTimeslots];
+        for (int ei = 0; ei < this.T.length; ei++) {
+            if (this.T[ei] == 0) {
+                continue;
+            }
+            for (int k = this.instance.getNeighborsStart(ei); k < this.instance.getNeighborsEnd(ei); k++) {
+                this.slotConflicts[this.instance.getNeighbor(k) * nTimeslots + this.T[ei] - 1] +=
+                        this.instance.getNeighborConflicts(k);
             }
         }
     }
     
     
     /**
-     * Generate a feasible initial solution using the saturation degree ordering
-     * (or any order provided by the getNextExam() function)
+     * Generate a feasible initial solution using the saturation degree ordering (see DSatur)
      *
      * @param instance      current instance
      * @param randTimetable if true, the order of the examined timeslots for assignment is randomized
@@ -66,33 +129,19 @@ public class Solution {
      * @return              feasible complete solution
      */
     public static Solution weightedSolution(Instance instance, boolean randTimetable) {
-        Solution weightedSolution = null;
-        ArrayList<Integer> candidateExams;
-
-        boolean examAssigned = false;
-        // Outer loop goes until a complete solution is found (i.e. all exams assigned to exactly one time-slot
-        // If the randomness takes to a partial solution, restart the algorithm
-        while (!examAssigned) {
-
-            weightedSolution = new Solution(instance);
-            int nExams = weightedSolution.instance.getExams().length;
-            candidateExams = new ArrayList<>(nExams);
-            for (int i = 0; i < nExams; i++) {
-                candidateExams.add(i);
-            }
-
-            while (!candidateExams.isEmpty()) {
-                int i = weightedSolution.getNextExam(candidateExams);
-
-                examAssigned = weightedSolution.placeExam(i, randTimetable);
+        return weightedSolution(instance, randTimetable, new Random());
+    }
 
-                if (!examAssigned) {
-//                    System.out.println("ERROR: exam not assigned to any timeslot");
-                    break;
-                }
-            }
+    /**
+     * Same as weightedSolution(Instance, boolean), with all the random choices taken from the given generator
+     */
+    public static Solution weightedSolution(Instance instance, boolean randTimetable, Random rand) {
+        Solution weightedSolution = null;
+        // Exams which cannot be placed are repaired locally, restart the algorithm only if the repairs do not
+        // converge to a complete solution
+        while (weightedSolution == null) {
+            weightedSolution = DSatur.build(instance, randTimetable, rand);
         }
-
         return weightedSolution;
     }
 
@@ -100,52 +149,52 @@ public class Solution {
         return weightedSolution(instance, false);
     }
 
-
     /**
-     * Saturation degree ordering: exams with less available time-slots are assigned first.
-     * Ties are resolved with random picking.
-     *
-     * @param candidateExams    list of exams remained to be assigned
-     * @return                  index of the chosen exam
-     */
-    private int getNextExam(ArrayList<Integer> candidateExams) {
-        int[] degree = new int[candidateExams.size()];
-        int max = 0;
-        for (int i = 0; i < candidateExams.size(); i++) {
-            int ei = candidateExams.get(i);
-            degree[i] = getSaturationDegree(ei);
-            if (degree[i] > max) {
-                max = degree[i];
+     * @param exam  exam to be checked
+     * @return      for each time-slot, true if it contains an exam in conflict with the given one
+     */
+    public boolean[] getUnavailableTimeslots(int exam) {
+        boolean[] unavailable = new boolean[this.timeslotSizes.length];
+        if (this.slotConflicts != null) {
+            int base = exam * unavailable.length;
+            for (int ts = 0; ts < unavailable.length; ts++) {
+                unavailable[ts] = this.slotConflicts[base + ts] > 0;
             }
+            return unavailable;
         }
-
-        ArrayList<Integer> maxIdxList = new ArrayList<>();
-        for (int i = 0; i < degree.length; i++) {
-            if (degree[i] == max)
-                maxIdxList.add(i);
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ts = this.T[this.instance.getNeighbor(k)];
+            if (ts > 0) {
+                unavailable[ts - 1] = true;
+            }
         }
-
-        int e = new Random().nextInt(maxIdxList.size());
-        return candidateExams.remove((int) maxIdxList.get(e));
+        return unavailable;
     }
 
     /**
-     * Saturation degree value for a given exam
-     *
-     * @param exam    exam to be checked
-     * @return      number of timeslots which are NOT available for the exam
-     */
-    private int getSaturationDegree(int exam) {
-        int deg = 0;
-        for (ArrayList<Integer> timeslot : this.timetable) {
-            for (int ej: timeslot) {
-                if (this.instance.getNConflicts(exam, ej) > 0) {
-                    deg += 1;
-                    break;
-                }
+     * @param exam      exam to be checked
+     * @param ts        time-slot (from 0 to nTimeslots-1)
+     * @param ignored   exam not to be considered (e.g. the one to be swapped), -1 if none
+     * @return          true if any exam in the time-slot, except `ignored`, is in conflict with the given exam
+     */
+    private boolean conflictsWithTimeslot(int exam, int ts, int ignored) {
+        if (this.slotConflicts != null) {
+            int conflicts = this.slotConflicts[exam * this.timeslotSizes.length + ts];
+            if (ignored >= 0 && ignored != exam && this.T[ignored] == ts + 1) {
+                conflicts -= this.instance.getNConflicts(exam, ignored);
+            }
+            return conflicts > 0;
+        }
+        if (this.instance.preferConflictBits(exam)) {
+            return this.instance.conflictsWithBitset(exam, this.timetable, ts * this.words, ignored);
+        }
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (this.T[ej] == ts + 1 && ej != ignored) {
+                return true;
             }
         }
-        return deg;
+        return false;
     }
 
     /**
@@ -156,37 +205,45 @@ public class Solution {
      * @return              true if the exam can be placed without conflicts
      */
     public boolean placeExam(int exam, boolean randTimetable) {
-        List<ArrayList<Integer>> timetableList = Arrays.asList(this.timetable);
-        if (randTimetable) {
-            Collections.shuffle(timetableList);
-        }
-        boolean examAssigned = false;
-        for (ArrayList<Integer> timeslot : timetableList) {
-            int l = 0;
-            boolean conflictFound = false;
-            // Scan for conflict in any exam in the current timeslot
-            while (l < timeslot.size() && !conflictFound) {
-                int j = timeslot.get(l);
-                conflictFound = this.instance.getNConflicts(exam, j) > 0;
-                l++;
-            }
+        return this.placeExam(exam, randTimetable ? ThreadLocalRandom.current() : null);
+    }
 
-            if (!conflictFound) {
-                timeslot.add(exam);
-                examAssigned = true;
-                break;
+    /**
+     * Place an exam in the timetable, examining the time-slots in an order shuffled with the given generator
+     * (in natural order if the generator is null)
+     */
+    public boolean placeExam(int exam, Random rand) {
+        int nTimeslots = this.timeslotSizes.length;
+        int[] timeslotsOrder = new int[nTimeslots];
+        for (int i = 0; i < nTimeslots; i++) {
+            timeslotsOrder[i] = i;
+        }
+        if (rand != null) {
+            for (int i = nTimeslots - 1; i > 0; i--) {
+                int r = rand.nextInt(i + 1);
+                int tmp = timeslotsOrder[i];
+                timeslotsOrder[i] = timeslotsOrder[r];
+                timeslotsOrder[r] = tmp;
+            }
+        }
+        // with the conflict table or bitsets, the time-slots are checked one at a time until a free one is found,
+        // otherwise all the unavailable ones are marked with a single scan of the neighbors
+        boolean direct = this.slotConflicts != null || this.instance.preferConflictBits(exam);
+        boolean[] unavailable = direct ? null : this.getUnavailableTimeslots(exam);
+        for (int ts : timeslotsOrder) {
+            if (direct ? !this.conflictsWithTimeslot(exam, ts, -1) : !unavailable[ts]) {
+                this.setTimeslot(exam, ts + 1);
+                return true;
             }
         }
-        return examAssigned;
+        return false;
     }
 
     public boolean placeExam(int exam, int timeslot) {
-        for (int ej : this.timetable[timeslot]) {
-            if (this.getInstance().getNConflicts(exam, ej) > 0) {
-                return false;
-            }
+        if (this.conflictsWithTimeslot(exam, timeslot, -1)) {
+            return false;
         }
-        this.timetable[timeslot].add(exam);
+        this.setTimeslot(exam, timeslot + 1);
         return true;
     }
 
@@ -196,13 +253,7 @@ public class Solution {
     }
 
     public int findExam(int exam) {
-        int ts = -1;
-        for (int i = 0; i < this.timetable.length; i++) {
-            if (timetable[i].contains(exam)) {
-                ts = i;
-                break;
-            }
-        }
+        int ts = this.T[exam] - 1;
         if (ts == -1) {
             System.err.println("Exam " + exam + " expected to be in timetable cannot be found in any timeslot");
         }
@@ -210,14 +261,122 @@ public class Solution {
     }
 
     public boolean popExam(int exam, int ts) {
-        return this.timetable[ts].remove(Integer.valueOf(exam));
+        boolean removed = this.T[exam] == ts + 1;
+        if (removed) {
+            this.setTimeslot(exam, 0);
+        }
+        return removed;
     }
 
     public int popRandExam() {
-        int tsPick = new Random().nextInt(this.timetable.length);
-        int examPick = new Random().nextInt(this.timetable[tsPick].size());
+        return this.popRandExam(ThreadLocalRandom.current());
+    }
 
-        return this.timetable[tsPick].remove(examPick);
+    /**
+     * Remove a random exam from the timetable (a random exam of a random non-empty time-slot)
+     *
+     * @return  the removed exam
+     */
+    public int popRandExam(Random rand) {
+        int tsPick;
+        do {
+            tsPick = rand.nextInt(this.timeslotSizes.length);
+        } while (this.timeslotSizes[tsPick] == 0);
+        int examPick = rand.nextInt(this.timeslotSizes[tsPick]);
+
+        int exam = this.nextExamInTimeslot(tsPick, 0);
+        for (int i = 0; i < examPick; i++) {
+            exam = this.nextExamInTimeslot(tsPick, exam + 1);
+        }
+        this.setTimeslot(exam, 0);
+        return exam;
+    }
+
+    /**
+     * Iterate over the exams of a time-slot, in increasing index order:
+     * {@code for (int e = nextExamInTimeslot(ts, 0); e >= 0; e = nextExamInTimeslot(ts, e + 1))}
+     *
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     * @param from  first exam index to be checked
+     * @return      the first exam with index >= from assigned to the time-slot, -1 if there is none
+     */
+    public int nextExamInTimeslot(int ts, int from) {
+        if (from >= T.length) {
+            return -1;
+        }
+        int base = ts * this.words;
+        int w = from >>> 6;
+        long word = this.timetable[base + w] & (-1L << from);
+        while (word == 0) {
+            if (++w == this.words) {
+                return -1;
+            }
+            word = this.timetable[base + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     * @return      indexes of the exams assigned to the time-slot
+     */
+    public int[] getTimeslotExams(int ts) {
+        int[] exams = new int[this.timeslotSizes[ts]];
+        int i = 0;
+        for (int e = this.nextExamInTimeslot(ts, 0); e >= 0; e = this.nextExamInTimeslot(ts, e + 1)) {
+            exams[i++] = e;
+        }
+        return exams;
+    }
+
+    public int getTimeslotSize(int ts) {
+        return this.timeslotSizes[ts];
+    }
+
+    public int getNTimeslots() {
+        return this.timeslotSizes.length;
+    }
+
+    /**
+     * Update the time-slot of an exam in T and in the timetable rows, the penalties of the exam and of its
+     * neighbors and their rows of the conflict table, visiting only the exams in conflict with it. Every change of
+     * the solution goes through here
+     *
+     * @param exam  exam to be moved
+     * @param ts    new time-slot, from 1 to nTimeslots (0 if the exam is removed from the timetable)
+     */
+    private void setTimeslot(int exam, int ts) {
+        int oldTS = this.T[exam];
+        int nTimeslots = this.timeslotSizes.length;
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (this.slotConflicts != null) {
+                if (oldTS > 0) {
+                    this.slotConflicts[ej * nTimeslots + oldTS - 1] -= this.instance.getNeighborConflicts(k);
+                }
+                if (ts > 0) {
+                    this.slotConflicts[ej * nTimeslots + ts - 1] += this.instance.getNeighborConflicts(k);
+                }
+            }
+            if (this.T[ej] > 0) {
+                int oldWeight = oldTS > 0 ? proximityWeight(oldTS, this.T[ej]) : 0;
+                int newWeight = ts > 0 ? proximityWeight(ts, this.T[ej]) : 0;
+                long variation = (long) (newWeight - oldWeight) * this.instance.getNeighborConflicts(k);
+                this.penalties[ej] += variation;
+                this.penalties[exam] += variation;
+            }
+        }
+        if (oldTS > 0) {
+            this.timetable[(oldTS - 1) * this.words + (exam >>> 6)] &= ~(1L << exam);
+            this.timeslotSizes[oldTS - 1]--;
+            this.hash ^= zobristKey(exam, oldTS);
+        }
+        if (ts > 0) {
+            this.timetable[(ts - 1) * this.words + (exam >>> 6)] |= 1L << exam;
+            this.timeslotSizes[ts - 1]++;
+            this.hash ^= zobristKey(exam, ts);
+        }
+        this.T[exam] = ts;
     }
 
     public void writeSolution() throws IOException {
@@ -237,38 +396,286 @@ public class Solution {
     }
 
     /**
-     * @return objective function value of the solution (lazy-load implementation)
+     * @return objective function value of the solution (lazy-load implementation, looked up in the fitness cache
+     *         of the instance before computing it, see Instance.setFitnessCache())
      */
     public double getFitness(){
 
         if (this.fitness == Double.MAX_VALUE) {
-            this.fitness = this.computeObj();
+            FitnessCache fitnessCache = this.instance.getFitnessCache();
+            double cached = fitnessCache != null ? fitnessCache.get(this.hash) : Double.NaN;
+            if (Double.isNaN(cached) || verifyDelta) {
+                this.fitness = this.computeObj();
+                if (fitnessCache != null) {
+                    if (!Double.isNaN(cached) && Math.abs(cached - this.fitness) > 1e-9 * Math.max(1, this.fitness)) {
+                        System.err.println("WARNING: cached fitness mismatch: " + cached + " instead of " + this.fitness);
+                    }
+                    fitnessCache.put(this.hash, this.fitness);
+                }
+            } else {
+                this.fitness = cached;
+            }
         }
         return this.fitness;
     }
 
+    /**
+     * @return Zobrist hash of the timetable: equal timetables have equal hashes, different ones collide with
+     *         probability 2^-64
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Key of an exam placed in a time-slot: the SplitMix64 mix of the pair, which gives the same distribution
+     * of a table of random keys without storing nExams x nTimeslots of them
+     *
+     * @param ts    time-slot, from 1 to nTimeslots
+     */
+    private static long zobristKey(int exam, int ts) {
+        long z = ((long) exam << 32 | ts) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     public void resetAttributes() {
         this.fitness = Double.MAX_VALUE;
-        this.T = null;
+    }
+
+    /**
+     * Set the objective value of a solution generated from `parent` with a single move, given the variation
+     * computed with getMoveDelta() on the parent. If the parent fitness is not known yet, the value is left
+     * to the lazy computation. In verification mode the value is checked against the full computation.
+     *
+     * @param parent    solution on which the move has been evaluated
+     * @param delta     objective variation of the move
+     */
+    public void setFitnessByDelta(Solution parent, double delta) {
+        if (parent.fitness == Double.MAX_VALUE) {
+            this.fitness = Double.MAX_VALUE;
+            return;
+        }
+        this.fitness = parent.fitness + delta;
+
+        if (verifyDelta) {
+            this.verifyFitness();
+        }
+    }
+
+    /**
+     * Update the objective value after a move applied in place, given its variation computed with getMoveDelta()
+     * before applying it. In verification mode the value is checked against the full computation.
+     *
+     * @param delta objective variation of the move
+     */
+    public void shiftFitness(double delta) {
+        if (this.fitness != Double.MAX_VALUE) {
+            this.fitness += delta;
+            if (verifyDelta) {
+                this.verifyFitness();
+            }
+        }
+    }
+
+    private void verifyFitness() {
+        double obj = this.computeObj();
+        if (Math.abs(obj - this.fitness) > 1e-9 * Math.max(1, obj)) {
+            System.err.println("WARNING: delta evaluation mismatch: " + this.fitness + " instead of " + obj);
+            this.fitness = obj;
+        }
+    }
+
+    /**
+     * Objective variation caused by moving a set of exams to new time-slots. Only the conflicts of the
+     * moved exams are visited, the solution is not modified.
+     *
+     * @param exams     indexes of the exams to be moved (repetitions are allowed, the last destination counts)
+     * @param timeslots destination time-slot of each exam (from 0 to nTimeslots-1)
+     * @return          objective value after the move minus objective value before the move
+     */
+    public double getMoveDelta(int[] exams, int[] timeslots) {
+        int nExams = this.instance.getExams().length;
+        int[] T = this.getT();
+        if (exams.length == 1 && T[exams[0]] > 0 && this.slotConflicts != null) {
+            if (T[exams[0]] == timeslots[0] + 1) {
+                return 0;
+            }
+            return (double) (this.placementPenalty(exams[0], timeslots[0]) - this.penalties[exams[0]])
+                    / this.instance.getnStudents();
+        }
+
+        MoveScratch scratch = MOVE_SCRATCH.get();
+        scratch.reset(nExams);
+        int moved = scratch.generation;
+        int counted = moved + 1;
+        for (int k = 0; k < exams.length; k++) {
+            scratch.stamps[exams[k]] = moved;
+            scratch.destinations[exams[k]] = timeslots[k] + 1;
+        }
+
+        // pairs of moved exams must be counted once: a pair is visited only from the first processed exam
+        long delta = 0;
+        for (int ei : exams) {
+            int newTi = scratch.destinations[ei];
+            if (scratch.stamps[ei] == counted || newTi == T[ei]) {
+                continue;
+            }
+            scratch.stamps[ei] = counted;
+            for (int k = this.instance.getNeighborsStart(ei); k < this.instance.getNeighborsEnd(ei); k++) {
+                int ej = this.instance.getNeighbor(k);
+                int mark = scratch.stamps[ej];
+                if (mark != counted) {
+                    int newTj = mark == moved ? scratch.destinations[ej] : T[ej];
+                    delta += this.instance.getNeighborConflicts(k) *
+                            (proximityWeight(newTi, newTj) - proximityWeight(T[ei], T[ej]));
+                }
+            }
+        }
+        return (double) delta / this.instance.getnStudents();
+    }
+
+    /**
+     * Weighted conflicts of an exam if it were placed in the given time-slot, with all the other exams where they
+     * are: the penalty the exam would have, not divided by the number of students. With the conflict table the
+     * value is read from the 11 time-slots around the destination, otherwise the neighbors are visited.
+     *
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     */
+    private long placementPenalty(int exam, int ts) {
+        long penalty = 0;
+        if (this.slotConflicts != null) {
+            int nTimeslots = this.timeslotSizes.length;
+            int base = exam * nTimeslots;
+            for (int t = Math.max(0, ts - 5); t <= Math.min(nTimeslots - 1, ts + 5); t++) {
+                penalty += (long) this.slotConflicts[base + t] * proximityWeight(ts, t);
+            }
+            return penalty;
+        }
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            int ej = this.instance.getNeighbor(k);
+            if (this.T[ej] > 0) {
+                penalty += (long) this.instance.getNeighborConflicts(k) * proximityWeight(ts + 1, this.T[ej]);
+            }
+        }
+        return penalty;
+    }
+
+    /**
+     * Best time-slot for an exam, with all the other exams where they are: the available time-slot where its
+     * penalty is minimum (the first one in case of ties). The students in conflict in each time-slot are read from
+     * the conflict table or accumulated with a single scan of the neighbors, then each time-slot is scored on the
+     * 11 time-slots around it: O(degree + nTimeslots), without evaluating a move for each time-slot.
+     *
+     * @return  time-slot from 0 to nTimeslots-1, the current one (T[exam]-1) if no other time-slot is available
+     */
+    public int getBestTimeslot(int exam) {
+        int nTimeslots = this.timeslotSizes.length;
+        int[] conflicts;
+        if (this.slotConflicts != null) {
+            conflicts = Arrays.copyOfRange(this.slotConflicts, exam * nTimeslots, (exam + 1) * nTimeslots);
+        } else {
+            conflicts = new int[nTimeslots];
+            for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+                int ts = this.T[this.instance.getNeighbor(k)];
+                if (ts > 0) {
+                    conflicts[ts - 1] += this.instance.getNeighborConflicts(k);
+                }
+            }
+        }
+
+        int bestTS = this.T[exam] - 1;
+        long bestPenalty = Long.MAX_VALUE;
+        for (int ts = 0; ts < nTimeslots; ts++) {
+            if (conflicts[ts] > 0) {
+                continue;
+            }
+            long penalty = 0;
+            for (int t = Math.max(0, ts - 5); t <= Math.min(nTimeslots - 1, ts + 5); t++) {
+                penalty += (long) conflicts[t] * proximityWeight(ts, t);
+            }
+            if (penalty < bestPenalty) {
+                bestPenalty = penalty;
+                bestTS = ts;
+            }
+        }
+        return bestTS;
+    }
+
+    /**
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     * @return      penalty of the exam (see getPenalty()) if it were moved to the given time-slot
+     */
+    public double getPlacementPenalty(int exam, int ts) {
+        return (double) this.placementPenalty(exam, ts) / this.instance.getnStudents();
+    }
+
+    /**
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     * @return      number of students enrolled both in the exam and in an exam of the time-slot, a lookup in the
+     *              conflict table if available (see hasConflictTable()), a scan of the neighbors otherwise
+     */
+    public int getSlotConflicts(int exam, int ts) {
+        if (this.slotConflicts != null) {
+            return this.slotConflicts[exam * this.timeslotSizes.length + ts];
+        }
+        int conflicts = 0;
+        for (int k = this.instance.getNeighborsStart(exam); k < this.instance.getNeighborsEnd(exam); k++) {
+            if (this.T[this.instance.getNeighbor(k)] == ts + 1) {
+                conflicts += this.instance.getNeighborConflicts(k);
+            }
+        }
+        return conflicts;
+    }
+
+    public boolean hasConflictTable() {
+        return this.slotConflicts != null;
+    }
+
+    /**
+     * @param ts    time-slot (from 0 to nTimeslots-1)
+     * @return      true if no exam in the time-slot is in conflict with the given one
+     */
+    public boolean isTimeslotAvailable(int exam, int ts) {
+        return !this.conflictsWithTimeslot(exam, ts, -1);
+    }
+
+    public static void setVerifyDelta(boolean verify) {
+        verifyDelta = verify;
+    }
+
+    /**
+     * Enable or disable the conflict table of the solutions created afterwards (enabled by default)
+     */
+    public static void setConflictTable(boolean enabled) {
+        conflictTable = enabled;
+    }
+
+    /**
+     * Penalty weight of a student enrolled in two exams placed in the given time-slots: 2^(5-dist) if the
+     * distance is at most 5, 0 otherwise
+     */
+    public static int proximityWeight(int ti, int tj) {
+        int dist = Math.abs(ti - tj);
+        return dist <= 5 ? 1 << (5 - dist) : 0;
     }
 
     private double computeObj() {
-        double obj = 0;
+        long obj = 0;
 
         int nExams = this.instance.getExams().length;
         int[] T = this.getT();
 
-        for (int i = 0; i < nExams - 1; i++) {
-            for (int j = i + 1; j < nExams; j++) {
-                if (this.instance.getNConflicts(i,j) > 0) {
-                    int dist = Math.abs(T[i] - T[j]);
-                    if (dist <= 5) {
-                        obj += Math.pow(2, 5 - dist) * this.instance.getNConflicts(i,j) / this.instance.getnStudents();
-                    }
+        for (int i = 0; i < nExams; i++) {
+            for (int k = this.instance.getNeighborsStart(i); k < this.instance.getNeighborsEnd(i); k++) {
+                int j = this.instance.getNeighbor(k);
+                if (j > i) {
+                    obj += (long) proximityWeight(T[i], T[j]) * this.instance.getNeighborConflicts(k);
                 }
             }
         }
-        return obj;
+        return (double) obj / this.instance.getnStudents();
     }
 
     /**
@@ -279,51 +686,41 @@ public class Solution {
      * @return      highest penalty exam and its timeslot (from 0 to nTimeslots-1)
      */
     public int[] getHighestPenaltyExam(double ratio) {
+        return this.getHighestPenaltyExam(ratio, ThreadLocalRandom.current());
+    }
+
+    public int[] getHighestPenaltyExam(double ratio, Random rand) {
         // pick nExams * ratio exams at random
         int totNExams = this.instance.getExams().length;
-        
-        int[] T = this.getT();
-        double[] penalties = new double[totNExams];
-        
-        for (int i = 0; i < totNExams; i++) {
-            penalties[i] += this.getPenalty(i);
-        }
-        
-        int[] selectedExams = Selection.pickRandPortion(IntStream.range(0, totNExams).toArray(), ratio);
+        int[] selectedExams = Selection.pickRandPortion(totNExams, ratio, rand);
+
+        // penalties are already up to date, only the selected exams are visited
         int resIdx = selectedExams[0];
-        double maxPenalty = penalties[selectedExams[0]];
+        long maxPenalty = this.penalties[selectedExams[0]];
         for (int i = 0; i < selectedExams.length; i++) {
-            if (penalties[selectedExams[i]] > maxPenalty) {
+            if (this.penalties[selectedExams[i]] > maxPenalty) {
                 resIdx = selectedExams[i];
-                maxPenalty = penalties[selectedExams[i]];
+                maxPenalty = this.penalties[selectedExams[i]];
             }
         }
-        
-        return new int[] {resIdx, T[resIdx]-1};
+
+        return new int[] {resIdx, this.T[resIdx]-1};
     }
 
+    /**
+     * @return penalty of the exam (contribution of its conflicts to the objective function), read from the
+     *         cached penalties
+     */
     public double getPenalty(int exam) {
-        int nExams = this.instance.getExams().length;
-        double penalty = 0;
-        int[] T = this.getT();
-        for (int j = 0; j < nExams; j++) {
-            if (exam != j && this.instance.getNConflicts(exam,j) > 0) {
-                int dist = Math.abs(T[exam] - T[j]);
-                if (dist <= 5) {
-                    penalty += Math.pow(2, 5 - dist) * this.instance.getNConflicts(exam,j) / this.instance.getnStudents();
-                }
-            }
-        }
-        return penalty;
+        return (double) this.penalties[exam] / this.instance.getnStudents();
     }
 
     public boolean isFeasible() {
-        for (ArrayList timeslot : this.timetable) {
-            for (int i = 0; i < timeslot.size() - 1; i++) {
-                for (int j = i + 1; j < timeslot.size(); j++) {
-                    if (this.instance.getNConflicts((int) timeslot.get(i), (int) timeslot.get(j)) > 0){
-                        return false;
-                    }
+        int nExams = this.instance.getExams().length;
+        for (int i = 0; i < nExams; i++) {
+            for (int k = this.instance.getNeighborsStart(i); k < this.instance.getNeighborsEnd(i); k++) {
+                if (this.T[i] > 0 && this.T[i] == this.T[this.instance.getNeighbor(k)]) {
+                    return false;
                 }
             }
         }
@@ -331,55 +728,19 @@ public class Solution {
     }
 
     /**
-     * @return array of length nExams, time-slot assigned to each exam
+     * @return array of length nExams, time-slot assigned to each exam (starting from 1, 0 if not assigned).
+     *         The array is kept up to date by every placement and removal
      */
     public int[] getT() {
-        if (this.T == null) {
-            int nExams = this.instance.getExams().length;
-            int[] T = new int[nExams];
-
-            for (int i = 0; i < nExams; i++) {
-                for (int j = 0; j < this.timetable.length; j++) {
-                    if (timetable[j].contains(i)) {
-                        T[i] = j + 1;  // assumed timeslot starting from 1
-                        break;
-                    }
-                }
-            }
-            this.T = T;
-        }
         return this.T;
     }
 
-    public ArrayList<Integer>[] getTimetable() {
-        return this.timetable;
-    }
-
     public Instance getInstance() {
         return instance;
     }
 
     public boolean swappable(int ei, int ti, int ej, int tj) {
-        boolean conflict1 = false;
-        boolean conflict2 = false;
-        for (int i = 0; i < this.timetable[tj].size(); i++) {
-            int ek = this.timetable[tj].get(i);
-            if (ej != ek && this.instance.getNConflicts(ei, ek) > 0) {
-                conflict1 = true;
-                break;
-            }
-        }
-        if (!conflict1) {
-            for (int i = 0; i < this.timetable[ti].size(); i++) {
-                int ek = this.timetable[ti].get(i);
-                if (ei != ek && this.instance.getNConflicts(ej, ek) > 0) {
-                    conflict2 = true;
-                    break;
-                }
-            }
-        }
-
-        return !conflict1 && !conflict2;
+        return !this.conflictsWithTimeslot(ei, tj, ej) && !this.conflictsWithTimeslot(ej, ti, ei);
     }
 
     public int getNeighborhoodOrigin() {
@@ -389,4 +750,29 @@ public class Solution {
     public void setNeighborhoodOrigin(int no) {
         this.neighborhoodOrigin = no;
     }
+
+    /**
+     * Scratch arrays of getMoveDelta(), one set for each thread: exam e is moved to destinations[e] if stamps[e] is
+     * the current generation, and its conflicts have already been counted if it is the current generation + 1, so
+     * nothing has to be cloned or cleared between two moves
+     */
+    private static class MoveScratch {
+
+        private int[] stamps = new int[0];
+        private int[] destinations = new int[0];
+        private int generation = -1;
+
+        private void reset(int nExams) {
+            if (this.stamps.length < nExams) {
+                this.stamps = new int[nExams];
+                this.destinations = new int[nExams];
+                this.generation = -1;
+            }
+            this.generation += 2;
+            if (this.generation >= Integer.MAX_VALUE - 1) {
+                Arrays.fill(this.stamps, 0);
+                this.generation = 1;
+            }
+        }
+    }
 }
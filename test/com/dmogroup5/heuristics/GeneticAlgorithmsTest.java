@@ -0,0 +1,110 @@
+package com.dmogroup5.heuristics;
+
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeneticAlgorithmsTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance05"};
+
+    /**
+     * Every exam placed, no exams in conflict in the same time-slot, and fitness equal to a full evaluation
+     */
+    private static void assertFeasible(String message, Instance instance, Solution solution) {
+        int[] T = solution.getT();
+        int placed = 0;
+        for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+            placed += solution.getTimeslotSize(ts);
+        }
+        assertEquals(message, T.length, placed);
+        for (int ei = 0; ei < T.length; ei++) {
+            assertTrue(message, T[ei] >= 1 && T[ei] <= solution.getNTimeslots());
+            for (int k = instance.getNeighborsStart(ei); k < instance.getNeighborsEnd(ei); k++) {
+                assertNotEquals(message, T[ei], T[instance.getNeighbor(k)]);
+            }
+        }
+
+        double penalties = 0;
+        for (int ei = 0; ei < T.length; ei++) {
+            penalties += solution.getPenalty(ei);
+        }
+        Solution copy = new Solution(solution);
+        copy.resetAttributes();
+        assertEquals(message, copy.getFitness(), solution.getFitness(), 1e-9);
+        assertEquals(message, copy.getFitness(), penalties / 2, 1e-9);
+    }
+
+    @Test
+    public void childrenAreFeasible() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = Instance.readInstance(name, "instances");
+            Random rand = new Random(2);
+            Solution[] parents = new Solution[10];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = Solution.weightedSolution(instance, true, rand);
+            }
+
+            for (GeneticAlgorithms.Crossover crossover : GeneticAlgorithms.Crossover.values()) {
+                for (int it = 0; it < 2000; it++) {
+                    Solution first = parents[rand.nextInt(parents.length)];
+                    Solution second = parents[rand.nextInt(parents.length)];
+                    int[] firstT = first.getT().clone();
+                    int[] secondT = second.getT().clone();
+                    Solution child = GeneticAlgorithms.crossover(first, second, crossover, rand);
+                    assertFeasible(name + " " + crossover, instance, child);
+                    // the parents are not modified
+                    assertTrue(Arrays.equals(firstT, first.getT()));
+                    assertTrue(Arrays.equals(secondT, second.getT()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mutationIsFeasibleAndReproducible() throws IOException {
+        Instance instance = Instance.readInstance("instance01", "instances");
+        Solution[] mutated = new Solution[2];
+        for (int run = 0; run < mutated.length; run++) {
+            Random rand = new Random(7);
+            Solution solution = Solution.weightedSolution(instance, true, rand);
+            solution.getFitness();
+            for (int it = 0; it < 100; it++) {
+                solution = GeneticAlgorithms.mutateSolution(solution, 0.2, rand);
+            }
+            assertFeasible("mutation", instance, solution);
+            mutated[run] = solution;
+        }
+        assertTrue(Arrays.equals(mutated[0].getT(), mutated[1].getT()));
+    }
+
+    @Test
+    public void selectionFavoursBetterSolutions() throws IOException {
+        Instance instance = Instance.readInstance("instance01", "instances");
+        Random rand = new Random(3);
+        List<Solution> pool = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            pool.add(Solution.weightedSolution(instance, true, rand));
+        }
+        pool.sort((a, b) -> Double.compare(a.getFitness(), b.getFitness()));
+
+        for (GeneticAlgorithms.ParentSelection selection : GeneticAlgorithms.ParentSelection.values()) {
+            int[] picks = new int[pool.size()];
+            for (Solution selected : GeneticAlgorithms.select(pool, 20000, selection, new Random(4))) {
+                picks[pool.indexOf(selected)]++;
+            }
+            assertTrue(selection.toString(), picks[0] > picks[pool.size() - 1]);
+            // the same generator gives the same selection
+            assertArrayEquals(GeneticAlgorithms.select(pool, 50, selection, new Random(5)),
+                    GeneticAlgorithms.select(pool, 50, selection, new Random(5)));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.dmogroup5.heuristics;
+
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Kempe chains checked against their definition, and their deltas against getMoveDelta(), with and without the
+ * conflict table
+ */
+public class KempeChainTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance05", "instance06"};
+
+    @After
+    public void restoreDefaults() {
+        Solution.setConflictTable(true);
+    }
+
+    @Test
+    public void chainsAreClosedAndDeltasMatch() throws IOException {
+        for (boolean table : new boolean[]{true, false}) {
+            Solution.setConflictTable(table);
+            for (String name : INSTANCES) {
+                Instance instance = Instance.readInstance(name, "instances");
+                Random rand = new Random(9);
+                Solution solution = Solution.weightedSolution(instance, true);
+                solution.getFitness();
+                int nExams = instance.getExams().length;
+                int nTimeslots = instance.getnTimeslots();
+
+                for (int it = 0; it < 1000; it++) {
+                    int exam = rand.nextInt(nExams);
+                    int examTS = solution.getT()[exam] - 1;
+                    int newTS;
+                    do {
+                        newTS = rand.nextInt(nTimeslots);
+                    } while (newTS == examTS);
+                    Move move = KempeChain.move(solution, exam, examTS, newTS, 9);
+                    assertEquals(name, solution.getMoveDelta(move.getExams(), move.getTimeslots()), move.getDelta(),
+                            1e-9);
+                    assertEquals(name, move.getDelta(), KempeChain.delta(solution, exam, examTS, newTS), 0);
+
+                    // each exam once, and every neighbor in the two time-slots is in the chain
+                    Set<Integer> chain = new HashSet<>();
+                    for (int ei : move.getExams()) {
+                        assertTrue(name, chain.add(ei));
+                    }
+                    assertTrue(name, chain.contains(exam));
+                    for (int ei : move.getExams()) {
+                        for (int k = instance.getNeighborsStart(ei); k < instance.getNeighborsEnd(ei); k++) {
+                            int ej = instance.getNeighbor(k);
+                            int ts = solution.getT()[ej] - 1;
+                            assertTrue(name, ts != examTS && ts != newTS || chain.contains(ej));
+                        }
+                    }
+
+                    if (it % 5 == 0) {
+                        double fitness = solution.getFitness();
+                        move.apply(solution);
+                        assertTrue(name, solution.isFeasible());
+                        assertEquals(name, fitness + move.getDelta(), solution.getFitness(), 1e-9);
+                    }
+                }
+
+                Solution copy = new Solution(solution);
+                copy.resetAttributes();
+                assertEquals(name, copy.getFitness(), solution.getFitness(), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.dmogroup5.heuristics;
+
+import com.dmogroup5.utils.Instance;
+import com.dmogroup5.utils.Solution;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Moves of the neighborhood structures, and the first/best improvement scans checked against a brute-force search
+ * with getMoveDelta(), with and without the conflict table
+ */
+public class LocalSearchTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance05"};
+    private static final double EPS = 1e-9;
+
+    @After
+    public void restoreDefaults() {
+        Solution.setConflictTable(true);
+    }
+
+    /**
+     * @return  best delta of moving a single exam to another available time-slot
+     */
+    private static double bruteForceExamMove(Solution solution) {
+        int[] T = solution.getT();
+        double best = Double.MAX_VALUE;
+        for (int ei = 0; ei < T.length; ei++) {
+            for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                if (ts != T[ei] - 1 && solution.isTimeslotAvailable(ei, ts)) {
+                    best = Math.min(best, solution.getMoveDelta(new int[]{ei}, new int[]{ts}));
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return  best delta of swapping the exams of two time-slots
+     */
+    private static double bruteForceTimeslotSwap(Solution solution) {
+        int[] T = solution.getT();
+        double best = Double.MAX_VALUE;
+        for (int a = 0; a < solution.getNTimeslots(); a++) {
+            for (int b = a + 1; b < solution.getNTimeslots(); b++) {
+                int[] exams = new int[solution.getTimeslotSize(a) + solution.getTimeslotSize(b)];
+                int[] timeslots = new int[exams.length];
+                int n = 0;
+                for (int ei = 0; ei < T.length; ei++) {
+                    if (T[ei] == a + 1 || T[ei] == b + 1) {
+                        exams[n] = ei;
+                        timeslots[n++] = T[ei] == a + 1 ? b : a;
+                    }
+                }
+                best = Math.min(best, solution.getMoveDelta(exams, timeslots));
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void scansMatchBruteForceSearch() throws IOException {
+        for (boolean table : new boolean[]{true, false}) {
+            Solution.setConflictTable(table);
+            for (String name : INSTANCES) {
+                Instance instance = Instance.readInstance(name, "instances");
+                Random rand = new Random(4);
+                for (int rep = 0; rep < 3; rep++) {
+                    Solution solution = Solution.weightedSolution(instance, true, rand);
+
+                    // the best exam move is never worse than leaving the exam where it is
+                    double examMove = Math.min(bruteForceExamMove(solution), 0);
+                    Move best = LocalSearch.genMove(solution, LocalSearch.NeighStructures.N2,
+                            LocalSearch.Exploration.BEST, rand);
+                    assertEquals(name, examMove, best.getDelta(), EPS);
+                    Move first = LocalSearch.genMove(solution, LocalSearch.NeighStructures.N2,
+                            LocalSearch.Exploration.FIRST, rand);
+                    assertEquals(name, examMove < -EPS, first.getDelta() < 0);
+
+                    double swap = bruteForceTimeslotSwap(solution);
+                    best = LocalSearch.genMove(solution, LocalSearch.NeighStructures.N3,
+                            LocalSearch.Exploration.BEST, rand);
+                    assertEquals(name, swap, best.getDelta(), EPS);
+                    first = LocalSearch.genMove(solution, LocalSearch.NeighStructures.N3,
+                            LocalSearch.Exploration.FIRST, rand);
+                    assertEquals(name, swap < -EPS, first.getDelta() < 0);
+
+                    for (LocalSearch.NeighStructures kempe : new LocalSearch.NeighStructures[]{
+                            LocalSearch.NeighStructures.N9, LocalSearch.NeighStructures.N10,
+                            LocalSearch.NeighStructures.N11}) {
+                        for (int it = 0; it < 10; it++) {
+                            Move move = LocalSearch.genMove(solution, kempe, LocalSearch.Exploration.BEST, rand);
+                            assertEquals(name, solution.getMoveDelta(move.getExams(), move.getTimeslots()),
+                                    move.getDelta(), EPS);
+                            move.apply(solution);
+                        }
+                    }
+                    assertTrue(name, solution.isFeasible());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void undoRestoresTheSolution() throws IOException {
+        Instance instance = Instance.readInstance("instance01", "instances");
+        Random rand = new Random(2);
+        Solution solution = Solution.weightedSolution(instance, true, rand);
+        for (LocalSearch.Exploration exploration : LocalSearch.Exploration.values()) {
+            for (LocalSearch.NeighStructures neighborhood : LocalSearch.NeighStructures.values()) {
+                for (int it = 0; it < 20; it++) {
+                    int[] before = solution.getT().clone();
+                    double fitness = solution.getFitness();
+                    Move move = LocalSearch.genMove(solution, neighborhood, exploration, rand);
+                    assertArrayEquals(neighborhood.name(), before, solution.getT());
+
+                    move.apply(solution);
+                    assertTrue(neighborhood.name(), solution.isFeasible());
+                    assertEquals(neighborhood.name(), fitness + move.getDelta(), solution.getFitness(), EPS);
+                    Solution copy = new Solution(solution);
+                    copy.resetAttributes();
+                    assertEquals(neighborhood.name(), copy.getFitness(), solution.getFitness(), EPS);
+
+                    move.undo(solution);
+                    assertArrayEquals(neighborhood.name(), before, solution.getT());
+                    assertEquals(neighborhood.name(), fitness, solution.getFitness(), EPS);
+                    if (it % 2 == 0) {
+                        move.apply(solution);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void conflictingMovesAreRejected() throws IOException {
+        Instance instance = Instance.readInstance("instance01", "instances");
+        Solution solution = Solution.weightedSolution(instance, true, new Random(3));
+        int exam = 0;
+        int neighbor = instance.getNeighbor(instance.getNeighborsStart(exam));
+        new Move(solution, new int[]{exam}, new int[]{solution.getT()[neighbor] - 1}, 0).apply(solution);
+    }
+}
@@ -0,0 +1,56 @@
+package com.dmogroup5.heuristics;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OperatorSelectorTest {
+
+    private static final LocalSearch.NeighStructures[] OPERATORS = {LocalSearch.NeighStructures.N1,
+            LocalSearch.NeighStructures.N2, LocalSearch.NeighStructures.N3};
+
+    @Test
+    public void operatorsNeverRunAreChosenFirst() {
+        OperatorSelector selector = new OperatorSelector(OPERATORS);
+        Random rand = new Random(1);
+        selector.update(0, 1000, 0);
+        selector.update(2, 1000, 0);
+        assertEquals(1, selector.select(1, rand)[0]);
+    }
+
+    @Test
+    public void selectionsAreDistinct() {
+        OperatorSelector selector = new OperatorSelector(OPERATORS);
+        Random rand = new Random(2);
+        for (int it = 0; it < 100; it++) {
+            int[] selected = selector.select(OPERATORS.length, rand);
+            Set<Integer> distinct = new HashSet<>();
+            for (int operator : selected) {
+                assertTrue(distinct.add(operator));
+                selector.update(operator, 1000 + rand.nextInt(1000), rand.nextDouble());
+            }
+        }
+    }
+
+    @Test
+    public void productiveOperatorsAreChosenMoreOften() {
+        OperatorSelector selector = new OperatorSelector(OPERATORS);
+        Random rand = new Random(3);
+        for (int it = 0; it < 200; it++) {
+            selector.update(0, 1000, 1.0);
+            selector.update(1, 1000, 0.01);
+            selector.update(2, 1000, 0);
+        }
+        int[] picks = new int[OPERATORS.length];
+        for (int it = 0; it < 10000; it++) {
+            picks[selector.select(1, rand)[0]]++;
+        }
+        assertTrue(picks[0] > picks[1]);
+        // the least productive neighborhoods keep a minimum share
+        assertTrue(picks[1] > 0 && picks[2] > 0);
+    }
+}
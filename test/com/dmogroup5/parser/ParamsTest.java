@@ -0,0 +1,49 @@
+package com.dmogroup5.parser;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParamsTest {
+
+    private static Params parse(String... args) throws ParseException {
+        Params params = new Params(args);
+        params.parse();
+        return params;
+    }
+
+    @Test
+    public void numericOptionsAreParsed() throws ParseException {
+        Params params = parse("instance01", "-t", "1.5", "--workers", "3", "--replicas", "2", "--islands", "4",
+                "--seed", "-42", "--nbh-threads", "2", "--fitness-cache", "0");
+        assertEquals(1.5, params.getTLIM(), 0);
+        assertEquals(3, params.getWORKERS());
+        assertEquals(2, params.getREPLICAS());
+        assertEquals(4, params.getISLANDS());
+        assertEquals(Long.valueOf(-42), params.getSEED());
+        assertEquals(2, params.getNBH_THREADS());
+        assertEquals(0, params.getFITNESS_CACHE());
+    }
+
+    @Test
+    public void invalidValuesAreReportedAsParseErrors() {
+        String[][] invalid = {
+                {"-t", "ten"}, {"-t", "0"}, {"-t", "NaN"},
+                {"--workers", "0"}, {"--workers", "two"}, {"--workers", "99999999999"},
+                {"--replicas", "1"}, {"--replicas", "2.5"},
+                {"--islands", "-1"}, {"--islands", ""},
+                {"--seed", "1e3"}, {"--seed", "seed"},
+                {"--nbh-threads", "0"}, {"--nbh-threads", "x"},
+                {"--fitness-cache", "-1"}
+        };
+        for (String[] option : invalid) {
+            try {
+                parse("instance01", option[0], option[1]);
+                fail(option[0] + " " + option[1] + " accepted");
+            } catch (ParseException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+}
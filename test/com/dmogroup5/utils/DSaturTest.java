@@ -0,0 +1,43 @@
+package com.dmogroup5.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DSaturTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"};
+
+    @Test
+    public void solutionsAreFeasibleAndComplete() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = SolutionTest.readInstance(name);
+            for (boolean randTimetable : new boolean[]{true, false}) {
+                Solution solution = Solution.weightedSolution(instance, randTimetable, new Random(1));
+                int placed = 0;
+                for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                    placed += solution.getTimeslotSize(ts);
+                }
+                assertEquals(name, solution.getT().length, placed);
+                for (int ts : solution.getT()) {
+                    assertTrue(name, ts >= 1 && ts <= solution.getNTimeslots());
+                }
+                assertTrue(name, solution.isFeasible());
+            }
+        }
+    }
+
+    @Test
+    public void constructionIsReproducibleFromTheSeed() throws IOException {
+        Instance instance = SolutionTest.readInstance("instance02");
+        for (long seed = 1; seed <= 5; seed++) {
+            int[] first = Solution.weightedSolution(instance, true, new Random(seed)).getT();
+            int[] second = Solution.weightedSolution(instance, true, new Random(seed)).getT();
+            assertArrayEquals(first, second);
+        }
+    }
+}
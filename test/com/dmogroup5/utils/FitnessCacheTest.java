@@ -0,0 +1,41 @@
+package com.dmogroup5.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FitnessCacheTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new FitnessCache(1).capacity());
+        assertEquals(1024, new FitnessCache(1000).capacity());
+        assertEquals(1024, new FitnessCache(1024).capacity());
+    }
+
+    @Test
+    public void storedValuesAreFound() {
+        FitnessCache cache = new FitnessCache(16);
+        cache.put(0x1234L, 12.5);
+        assertEquals(12.5, cache.get(0x1234L), 0);
+        assertTrue(Double.isNaN(cache.get(0x1235L)));
+    }
+
+    @Test
+    public void sameIndexReplacesTheValue() {
+        FitnessCache cache = new FitnessCache(16);
+        cache.put(3L, 1.0);
+        cache.put(3L + 16, 2.0);
+        assertTrue(Double.isNaN(cache.get(3L)));
+        assertEquals(2.0, cache.get(3L + 16), 0);
+    }
+
+    @Test
+    public void zeroIsNotStored() {
+        FitnessCache cache = new FitnessCache(16);
+        cache.put(7L, 4.0);
+        cache.put(7L, 0.0);
+        assertEquals(4.0, cache.get(7L), 0);
+        assertTrue(Double.isNaN(cache.get(8L)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.dmogroup5.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Conflict graph of the instances checked against the pairs of exams of each student in the `.stu` files
+ */
+public class InstanceTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance02", "instance03", "instance04",
+            "instance05", "instance06", "instance07", "instance08"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameInstance(Instance expected, Instance actual) {
+        assertArrayEquals(expected.getExams(), actual.getExams());
+        assertEquals(expected.getnTimeslots(), actual.getnTimeslots());
+        assertEquals(expected.getnStudents(), actual.getnStudents());
+        for (int ei = 0; ei < expected.getExams().length; ei++) {
+            assertEquals(expected.getNeighborsStart(ei), actual.getNeighborsStart(ei));
+            assertEquals(expected.getNeighborsEnd(ei), actual.getNeighborsEnd(ei));
+            for (int k = expected.getNeighborsStart(ei); k < expected.getNeighborsEnd(ei); k++) {
+                assertEquals(expected.getNeighbor(k), actual.getNeighbor(k));
+                assertEquals(expected.getNeighborConflicts(k), actual.getNeighborConflicts(k));
+            }
+        }
+    }
+
+    @Test
+    public void conflictGraphMatchesEnrolments() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = SolutionTest.readInstance(name);
+            int[] exams = instance.getExams();
+
+            // exams of each student, as indexes of the `exams` array
+            Map<String, Set<Integer>> enrolments = new HashMap<>();
+            for (String line : Files.readAllLines(Paths.get("instances", name + ".stu"))) {
+                String[] values = line.trim().split("\\s+");
+                if (values.length == 2) {
+                    int exam = Arrays.binarySearch(exams, Integer.parseInt(values[1]));
+                    enrolments.computeIfAbsent(values[0], s -> new HashSet<>()).add(exam);
+                }
+            }
+            assertEquals(name, enrolments.size(), instance.getnStudents());
+
+            Map<Long, Integer> conflicts = new HashMap<>();
+            for (Set<Integer> studentExams : enrolments.values()) {
+                for (int ei : studentExams) {
+                    for (int ej : studentExams) {
+                        if (ei != ej) {
+                            conflicts.merge((long) ei * exams.length + ej, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+
+            int edges = 0;
+            for (int ei = 0; ei < exams.length; ei++) {
+                for (int k = instance.getNeighborsStart(ei); k < instance.getNeighborsEnd(ei); k++) {
+                    int ej = instance.getNeighbor(k);
+                    Integer expected = conflicts.get((long) ei * exams.length + ej);
+                    assertNotNull(name, expected);
+                    assertEquals(name, (int) expected, instance.getNeighborConflicts(k));
+                    assertEquals(name, (int) expected, instance.getNConflicts(ej, ei));
+                    edges++;
+                }
+            }
+            assertEquals(name, conflicts.size(), edges);
+        }
+    }
+
+    @Test
+    public void snapshotIsReadBackAndInvalidatedByChanges() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        for (String extension : new String[]{".exm", ".stu", ".slo"}) {
+            Files.copy(Paths.get("instances", "instance01" + extension), directory.resolve("instance01" + extension));
+        }
+        Path snapshot = directory.resolve("instance01" + Instance.SNAPSHOT_EXTENSION);
+        Instance parsed = SolutionTest.readInstance("instance01");
+
+        assertSameInstance(parsed, Instance.readInstance("instance01", directory.toString(), true));
+        assertTrue(Files.exists(snapshot));
+        assertSameInstance(parsed, Instance.readInstance("instance01", directory.toString(), true));
+
+        // a new enrolment in the source files replaces the snapshot
+        Files.write(directory.resolve("instance01.stu"), "\ns99999 0001\ns99999 0002\n".getBytes(),
+                StandardOpenOption.APPEND);
+        Instance changed = Instance.readInstance("instance01", directory.toString(), true);
+        assertEquals(parsed.getnStudents() + 1, changed.getnStudents());
+        assertSameInstance(changed, Instance.readInstance("instance01", directory.toString(), false));
+
+        // a change of the same size is detected by the modification time
+        Path slots = directory.resolve("instance01.slo");
+        FileTime modified = Files.getLastModifiedTime(slots);
+        Files.write(slots, "14".getBytes());
+        Files.setLastModifiedTime(slots, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertEquals(14, Instance.readInstance("instance01", directory.toString(), true).getnTimeslots());
+    }
+
+    @Test
+    public void readErrorsNameTheFile() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        try {
+            Instance.readInstance("instance01", directory.toString());
+            fail("missing files accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().matches("File .*instance01\\.exm not found"));
+        }
+
+        // a malformed file is not reported as missing
+        Files.copy(Paths.get("instances", "instance01.exm"), directory.resolve("instance01.exm"));
+        Files.copy(Paths.get("instances", "instance01.stu"), directory.resolve("instance01.stu"));
+        Files.write(directory.resolve("instance01.slo"), new byte[0]);
+        try {
+            Instance.readInstance("instance01", directory.toString());
+            fail("empty time-slots file accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().matches("File .*instance01\\.slo: unexpected end of file"));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.dmogroup5.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class IntTokenizerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IntTokenizer tokenizer(String content) throws IOException {
+        Path file = this.folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return new IntTokenizer(file);
+    }
+
+    @Test
+    public void everyOtherCharacterIsASeparator() throws IOException {
+        IntTokenizer tokenizer = this.tokenizer("s12 0034\r\ns1\t7\n\n");
+        int[] expected = {12, 34, 1, 7};
+        for (int value : expected) {
+            assertTrue(tokenizer.hasNextInt());
+            assertEquals(value, tokenizer.nextInt());
+        }
+        assertFalse(tokenizer.hasNextInt());
+    }
+
+    @Test
+    public void endOfFileIsAnError() throws IOException {
+        IntTokenizer tokenizer = this.tokenizer("1 ");
+        tokenizer.nextInt();
+        try {
+            tokenizer.nextInt();
+            fail("no error at the end of the file");
+        } catch (IOException e) {
+            // the message names the file, since it is not wrapped by Instance
+            assertTrue(e.getMessage(), e.getMessage().startsWith("File " + this.folder.getRoot()));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void valuesOutOfRangeAreAnError() throws IOException {
+        this.tokenizer("2147483648").nextInt();
+    }
+}
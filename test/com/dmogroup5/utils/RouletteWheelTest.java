@@ -0,0 +1,35 @@
+package com.dmogroup5.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouletteWheelTest {
+
+    @Test
+    public void indicesArePickedInProportionToTheWeights() {
+        RouletteWheel wheel = new RouletteWheel(new double[]{1, 0, 3, 0});
+        Random rand = new Random(1);
+        int[] picks = new int[wheel.size()];
+        int draws = 40000;
+        for (int i = 0; i < draws; i++) {
+            picks[wheel.next(rand)]++;
+        }
+        assertEquals(0, picks[1]);
+        assertEquals(0, picks[3]);
+        assertEquals(0.25, (double) picks[0] / draws, 0.01);
+        assertEquals(0.75, (double) picks[2] / draws, 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWeightsAreRejected() {
+        new RouletteWheel(new double[]{1, -1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSumIsRejected() {
+        new RouletteWheel(new double[]{0, 0});
+    }
+}
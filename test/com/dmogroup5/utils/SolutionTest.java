@@ -0,0 +1,295 @@
+package com.dmogroup5.utils;
+
+import com.dmogroup5.heuristics.LocalSearch;
+import com.dmogroup5.heuristics.Move;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Incremental evaluation of the solutions (move deltas, penalties, best time-slots and hashes) checked against a
+ * full evaluation, with and without the conflict table
+ */
+@RunWith(Parameterized.class)
+public class SolutionTest {
+
+    private static final String[] INSTANCES = {"instance01", "instance05"};
+    private static final double EPS = 1e-9;
+
+    @Parameterized.Parameter
+    public boolean conflictTable;
+
+    @Parameterized.Parameters(name = "conflict table {0}")
+    public static Object[] conflictTables() {
+        return new Object[]{true, false};
+    }
+
+    @Before
+    public void setConflictTable() {
+        Solution.setConflictTable(this.conflictTable);
+    }
+
+    @After
+    public void restoreDefaults() {
+        Solution.setConflictTable(true);
+    }
+
+    static Instance readInstance(String name) throws IOException {
+        return Instance.readInstance(name, "instances");
+    }
+
+    /**
+     * Objective value of any assignment, even unfeasible, visiting every pair of exams
+     */
+    private static double objective(Instance instance, int[] T) {
+        long obj = 0;
+        for (int ei = 0; ei < T.length; ei++) {
+            for (int ej = ei + 1; ej < T.length; ej++) {
+                int dist = Math.abs(T[ei] - T[ej]);
+                if (dist <= 5) {
+                    obj += (long) instance.getNConflicts(ei, ej) << (5 - dist);
+                }
+            }
+        }
+        return (double) obj / instance.getnStudents();
+    }
+
+    /**
+     * Penalty of an exam placed in the given time-slot (from 0 to nTimeslots-1), visiting its neighbors
+     */
+    private static double placementPenalty(Instance instance, int[] T, int exam, int ts) {
+        long penalty = 0;
+        for (int k = instance.getNeighborsStart(exam); k < instance.getNeighborsEnd(exam); k++) {
+            int tj = T[instance.getNeighbor(k)];
+            int dist = Math.abs(ts + 1 - tj);
+            if (tj > 0 && dist <= 5) {
+                penalty += (long) instance.getNeighborConflicts(k) << (5 - dist);
+            }
+        }
+        return (double) penalty / instance.getnStudents();
+    }
+
+    @Test
+    public void moveDeltaMatchesFullEvaluation() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = readInstance(name);
+            Random rand = new Random(5);
+            Solution solution = Solution.weightedSolution(instance, true);
+            int nExams = solution.getT().length;
+            double before = objective(instance, solution.getT());
+
+            for (int it = 0; it < 500; it++) {
+                // repetitions are allowed: the last destination of an exam counts
+                int size = 1 + rand.nextInt(8);
+                int[] exams = new int[size];
+                int[] timeslots = new int[size];
+                int[] T = solution.getT().clone();
+                for (int k = 0; k < size; k++) {
+                    exams[k] = rand.nextInt(nExams);
+                    timeslots[k] = rand.nextInt(instance.getnTimeslots());
+                    T[exams[k]] = timeslots[k] + 1;
+                }
+                assertEquals(name, objective(instance, T) - before, solution.getMoveDelta(exams, timeslots), EPS);
+            }
+        }
+    }
+
+    @Test
+    public void fitnessByDeltaMatchesFullEvaluation() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = readInstance(name);
+            Solution solution = Solution.weightedSolution(instance, true);
+            solution.getFitness();
+
+            LocalSearch.NeighStructures[] neighborhoods = LocalSearch.NeighStructures.values();
+            for (int it = 0; it < 200; it++) {
+                LocalSearch.genMove(solution, neighborhoods[it % neighborhoods.length]).apply(solution);
+                assertEquals(name, objective(instance, solution.getT()), solution.getFitness(), EPS);
+            }
+            assertTrue(name, solution.isFeasible());
+        }
+    }
+
+    @Test
+    public void penaltiesFollowTheMoves() throws IOException {
+        for (String name : INSTANCES) {
+            Instance instance = readInstance(name);
+            Solution solution = Solution.weightedSolution(instance, true);
+
+            LocalSearch.NeighStructures[] neighborhoods = LocalSearch.NeighStructures.values();
+            for (int it = 0; it < 200; it++) {
+                LocalSearch.genMove(solution, neighborhoods[it % neighborhoods.length]).apply(solution);
+            }
+
+            int[] T = solution.getT();
+            double penalties = 0;
+            for (int ei = 0; ei < T.length; ei++) {
+                assertEquals(name, placementPenalty(instance, T, ei, T[ei] - 1), solution.getPenalty(ei), EPS);
+                for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                    assertEquals(name, placementPenalty(instance, T, ei, ts), solution.getPlacementPenalty(ei, ts),
+                            EPS);
+                }
+                penalties += solution.getPenalty(ei);
+            }
+            assertEquals(name, solution.getFitness(), penalties / 2, EPS);
+        }
+    }
+
+    @Test
+    public void timetableRowsMatchT() throws IOException {
+        Instance instance = readInstance("instance01");
+        Solution solution = Solution.weightedSolution(instance, true);
+        LocalSearch.NeighStructures[] neighborhoods = LocalSearch.NeighStructures.values();
+        for (int it = 0; it < 200; it++) {
+            LocalSearch.genMove(solution, neighborhoods[it % neighborhoods.length]).apply(solution);
+
+            int[] T = solution.getT();
+            int placed = 0;
+            for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                int[] exams = solution.getTimeslotExams(ts);
+                assertEquals(exams.length, solution.getTimeslotSize(ts));
+                for (int ei : exams) {
+                    assertEquals(ts + 1, T[ei]);
+                }
+                placed += exams.length;
+            }
+            assertEquals(T.length, placed);
+        }
+    }
+
+    /**
+     * swappable() against a visit of the neighbors, on instances where the bitsets and the neighbors are both used
+     */
+    @Test
+    public void conflictChecksMatchNeighbors() throws IOException {
+        for (String name : new String[]{"instance01", "instance06"}) {
+            Instance instance = readInstance(name);
+            Solution solution = Solution.weightedSolution(instance, true);
+            int[] T = solution.getT();
+            Random rand = new Random(4);
+            for (int it = 0; it < 20000; it++) {
+                int ei = rand.nextInt(T.length);
+                int ej = rand.nextInt(T.length);
+                if (ei == ej) {
+                    continue;
+                }
+                boolean expected = true;
+                for (int ek = 0; ek < T.length; ek++) {
+                    if (ek != ei && ek != ej && (T[ek] == T[ej] && instance.getNConflicts(ei, ek) > 0 ||
+                            T[ek] == T[ei] && instance.getNConflicts(ej, ek) > 0)) {
+                        expected = false;
+                        break;
+                    }
+                }
+                assertEquals(name, expected, solution.swappable(ei, T[ei] - 1, ej, T[ej] - 1));
+            }
+        }
+    }
+
+    @Test
+    public void copiesWithoutTheTableAnswerTheSameQueries() throws IOException {
+        Solution solution = Solution.weightedSolution(readInstance("instance01"), true, new Random(9));
+        Solution readOnly = new Solution(solution, false);
+        Solution rebuilt = new Solution(readOnly);
+        assertFalse(readOnly.hasConflictTable());
+        assertEquals(this.conflictTable, rebuilt.hasConflictTable());
+        for (int ei = 0; ei < solution.getT().length; ei++) {
+            for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                int conflicts = solution.getSlotConflicts(ei, ts);
+                assertEquals(conflicts, readOnly.getSlotConflicts(ei, ts));
+                assertEquals(conflicts, rebuilt.getSlotConflicts(ei, ts));
+                assertEquals(solution.getPlacementPenalty(ei, ts), rebuilt.getPlacementPenalty(ei, ts), EPS);
+            }
+        }
+        assertEquals(solution.getFitness(), readOnly.getFitness(), 0);
+        assertEquals(solution.getHash(), rebuilt.getHash());
+    }
+
+    /**
+     * getBestTimeslot() against the evaluation of a move delta for each available time-slot
+     */
+    @Test
+    public void bestTimeslotMatchesSlotBySlotSearch() throws IOException {
+        for (String name : INSTANCES) {
+            Solution solution = Solution.weightedSolution(readInstance(name), true);
+            int[] T = solution.getT();
+            for (int ei = 0; ei < T.length; ei++) {
+                int expected = T[ei] - 1;
+                double bestDelta = 0;
+                for (int ts = 0; ts < solution.getNTimeslots(); ts++) {
+                    if (ts == T[ei] - 1 || !solution.isTimeslotAvailable(ei, ts)) {
+                        continue;
+                    }
+                    double delta = solution.getMoveDelta(new int[]{ei}, new int[]{ts});
+                    // the first best time-slot, the current one only if no other one is better
+                    if (delta < bestDelta - EPS || delta < bestDelta + EPS && ts < expected) {
+                        bestDelta = delta;
+                        expected = ts;
+                    }
+                }
+                assertEquals(name + " exam " + ei, expected, solution.getBestTimeslot(ei));
+            }
+        }
+    }
+
+    @Test
+    public void hashFollowsTheTimetable() throws IOException {
+        Instance instance = readInstance("instance01");
+        Random rand = new Random(3);
+        Solution solution = Solution.weightedSolution(instance, true, rand);
+        LocalSearch.NeighStructures[] neighborhoods = LocalSearch.NeighStructures.values();
+
+        for (int it = 0; it < 20000; it++) {
+            Move move = LocalSearch.genMove(solution, neighborhoods[rand.nextInt(neighborhoods.length)], rand);
+            long before = solution.getHash();
+            move.apply(solution);
+            if (rand.nextInt(3) == 0) {
+                move.undo(solution);
+                assertEquals(before, solution.getHash());
+            }
+
+            if (it % 100 == 0) {
+                // the same timetable built in another order, and a copy
+                Solution rebuilt = new Solution(instance);
+                int[] T = solution.getT();
+                for (int ei = T.length - 1; ei >= 0; ei--) {
+                    assertTrue(rebuilt.placeExam(ei, T[ei] - 1));
+                }
+                assertEquals(solution.getHash(), rebuilt.getHash());
+                assertEquals(solution.getHash(), new Solution(solution).getHash());
+            }
+        }
+
+        Solution other = Solution.weightedSolution(instance, true, rand);
+        assertNotEquals(solution.getHash(), other.getHash());
+    }
+
+    @Test
+    public void cachedFitnessMatchesFullEvaluation() throws IOException {
+        Instance instance = readInstance("instance01");
+        FitnessCache cache = new FitnessCache(1 << 10);
+        instance.setFitnessCache(cache);
+        Solution solution = Solution.weightedSolution(instance, true, new Random(8));
+        double fitness = solution.getFitness();
+        assertEquals(fitness, cache.get(solution.getHash()), 0);
+
+        Solution copy = new Solution(solution);
+        copy.resetAttributes();
+        assertEquals(fitness, copy.getFitness(), 0);
+        assertEquals(objective(instance, solution.getT()), fitness, EPS);
+
+        // the same timetable of another instance is not looked up in this cache
+        Instance other = readInstance("instance01");
+        Solution twin = Solution.weightedSolution(other, true, new Random(8));
+        assertEquals(solution.getHash(), twin.getHash());
+        cache.put(twin.getHash(), fitness + 1);
+        assertEquals(fitness, twin.getFitness(), EPS);
+    }
+}